@@ -0,0 +1,133 @@
+package com.enviouse.emi_gamestages_link.client;
+
+import com.enviouse.emi_gamestages_link.common.EmiGameStagesLink;
+import com.enviouse.emi_gamestages_link.common.LockIndex;
+import com.enviouse.emi_gamestages_link.common.LockSnapshot;
+import com.enviouse.emi_gamestages_link.common.network.S2CLockDataChunkPacket;
+import net.minecraft.Util;
+import net.minecraft.client.Minecraft;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Reassembles chunked lock table transfers from the server.
+ * Chunks are collected on the client thread; inflating and decoding the
+ * completed table runs on a background worker, and the result is handed
+ * back to the client thread only to be installed.
+ * <p>
+ * Stage deltas and unchanged confirmations that arrive while a table is decoding
+ * were sent after it, so they are held back and applied once it is installed.
+ */
+public class ChunkedSyncReceiver {
+
+    // Upper bound for a single table, protects against corrupt length headers
+    private static final int MAX_TABLE_BYTES = 64 * 1024 * 1024;
+
+    private static int activeTransferId = -1;
+    private static byte[] buffer;
+    private static int nextChunk;
+    private static int received;
+
+    // Transfer whose table is being decoded, and packets that arrived after it
+    private static int decodingTransferId = -1;
+    private static final List<Runnable> deferred = new ArrayList<>();
+
+    /**
+     * Hold back a packet handler until the table being decoded is installed.
+     *
+     * @return true if the action was deferred, false if no decode is pending and it should run now
+     */
+    public static boolean deferWhileDecoding(Runnable action) {
+        if (decodingTransferId == -1) {
+            return false;
+        }
+        deferred.add(action);
+        return true;
+    }
+
+    /**
+     * Handle one chunk. A chunk from a newer transfer discards any partial older one.
+     */
+    public static void accept(S2CLockDataChunkPacket packet) {
+        if (packet.getTransferId() != activeTransferId) {
+            if (packet.getChunkIndex() != 0) {
+                // Tail of a transfer we never saw the start of
+                return;
+            }
+            if (packet.getCompressedLength() > MAX_TABLE_BYTES || packet.getUncompressedLength() > MAX_TABLE_BYTES) {
+                EmiGameStagesLink.LOGGER.warn("Ignoring lock table transfer of {} bytes, over the size limit",
+                        packet.getUncompressedLength());
+                return;
+            }
+            activeTransferId = packet.getTransferId();
+            // Anything held back for an older table is superseded by this one
+            decodingTransferId = -1;
+            deferred.clear();
+            buffer = new byte[packet.getCompressedLength()];
+            nextChunk = 0;
+            received = 0;
+        }
+
+        if (packet.getChunkIndex() != nextChunk || received + packet.getLength() > buffer.length) {
+            EmiGameStagesLink.LOGGER.warn("Lock table transfer {} out of sequence at chunk {}, requesting a resync",
+                    activeTransferId, packet.getChunkIndex());
+            reset();
+            ClientInit.requestLockDataRefresh();
+            return;
+        }
+
+        System.arraycopy(packet.getData(), packet.getOffset(), buffer, received, packet.getLength());
+        received += packet.getLength();
+        nextChunk++;
+
+        if (packet.isLast()) {
+            complete(activeTransferId, buffer, packet.getUncompressedLength(), packet.getRevision(),
+                    packet.getContentHash(), packet.getStages());
+            buffer = null;
+        }
+    }
+
+    private static void complete(int transferId, byte[] compressed, int uncompressedLength, int revision,
+                                 long contentHash, List<String> stages) {
+        Minecraft mc = Minecraft.getInstance();
+        decodingTransferId = transferId;
+        CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return LockIndex.fromCompressed(compressed, uncompressedLength);
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }, Util.backgroundExecutor())
+                .whenCompleteAsync((index, error) -> {
+                    if (transferId != activeTransferId) {
+                        // Superseded by a newer transfer while decoding
+                        return;
+                    }
+                    List<Runnable> held = new ArrayList<>(deferred);
+                    decodingTransferId = -1;
+                    deferred.clear();
+                    if (error != null) {
+                        // The resync replaces whatever was held back
+                        EmiGameStagesLink.LOGGER.warn("Failed to decode lock table transfer {}: {}", transferId, error.getMessage());
+                        ClientInit.requestLockDataRefresh();
+                        return;
+                    }
+                    ClientPacketHandler.handleFullLockData(new LockSnapshot(index, stages), revision, contentHash);
+                    held.forEach(Runnable::run);
+                }, mc);
+    }
+
+    /**
+     * Drop any partial transfer (on disconnect)
+     */
+    public static void reset() {
+        activeTransferId = -1;
+        buffer = null;
+        nextChunk = 0;
+        received = 0;
+        decodingTransferId = -1;
+        deferred.clear();
+    }
+}
@@ -6,15 +6,17 @@ import com.enviouse.emi_gamestages_link.common.network.NetworkHandler;
 import com.enviouse.emi_gamestages_link.common.integration.IntegrationManager;
 import net.darkhax.gamestages.event.StagesSyncedEvent;
 import net.minecraft.ChatFormatting;
-import net.minecraft.client.Minecraft;
 import net.minecraft.network.chat.Component;
 import net.minecraft.network.chat.Style;
 import net.minecraft.network.chat.TextColor;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraftforge.client.event.ClientPlayerNetworkEvent;
 import net.minecraftforge.common.MinecraftForge;
+import net.minecraftforge.event.TagsUpdatedEvent;
 import net.minecraftforge.event.entity.player.ItemTooltipEvent;
+import net.minecraftforge.eventbus.api.EventPriority;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.event.config.ModConfigEvent;
 import net.minecraftforge.fml.event.lifecycle.FMLClientSetupEvent;
 import net.minecraftforge.fml.javafmlmod.FMLJavaModLoadingContext;
 import net.minecraftforge.registries.ForgeRegistries;
@@ -34,9 +36,12 @@ public class ClientInit {
         // Register client setup event on mod event bus
         var modEventBus = FMLJavaModLoadingContext.get().getModEventBus();
         modEventBus.addListener(ClientInit::onClientSetup);
+        // After ModConfiguration has re-read the lock maps
+        modEventBus.addListener(EventPriority.LOWEST, ClientInit::onConfigReloaded);
 
         // Register client game events on forge event bus
         MinecraftForge.EVENT_BUS.register(new ClientEventHandler());
+        MinecraftForge.EVENT_BUS.addListener(ClientTaskScheduler::onClientTick);
 
         EmiGameStagesLink.LOGGER.info("Client initialization registered");
     }
@@ -57,22 +62,22 @@ public class ClientInit {
     }
 
     /**
-     * Trigger EMI to refresh/reload its data.
-     * Called when lock data is received from the server.
+     * Config item/tag locks feed the resolver cache, so drop it when the config file is edited
+     */
+    private static void onConfigReloaded(ModConfigEvent.Reloading event) {
+        if (event.getConfig().getModId().equals(EmiGameStagesLink.MODID)) {
+            ClientStageLockResolver.clearConfigCache();
+        }
+    }
+
+    /**
+     * Request a full EMI reload through the {@link EmiReloadGate}.
+     * Only needed when ingredients were actually hidden or re-added; lock data and
+     * stage changes just bump the resolver's lock-state version and overlays repaint.
      */
     public static void triggerEmiRefresh() {
         try {
-            Minecraft mc = Minecraft.getInstance();
-            if (mc != null) {
-                mc.execute(() -> {
-                    try {
-                        dev.emi.emi.runtime.EmiReloadManager.reload();
-                        EmiGameStagesLink.LOGGER.debug("Triggered EMI reload after lock data update");
-                    } catch (Throwable t) {
-                        EmiGameStagesLink.LOGGER.debug("Unable to trigger EMI reload: {}", t.getMessage());
-                    }
-                });
-            }
+            EmiReloadGate.request();
         } catch (Throwable t) {
             EmiGameStagesLink.LOGGER.debug("Unable to schedule EMI reload: {}", t.getMessage());
         }
@@ -80,11 +85,12 @@ public class ClientInit {
 
     /**
      * Request fresh lock data from the server.
-     * Can be called when EMI is opened or manually refreshed.
+     * Sends the hash of the cached table so the server can reply with
+     * stages only when the table is unchanged.
      */
     public static void requestLockDataRefresh() {
         try {
-            NetworkHandler.requestLockData();
+            NetworkHandler.requestLockData(LockStateCache.getContentHash());
             EmiGameStagesLink.LOGGER.debug("Requested lock data refresh from server");
         } catch (Throwable t) {
             EmiGameStagesLink.LOGGER.debug("Unable to request lock data: {}", t.getMessage());
@@ -139,43 +145,61 @@ public class ClientInit {
         }
 
         /**
-         * Clear cache when disconnecting from server
+         * Config tag locks depend on tag membership, which the server resends on join and /reload
+         */
+        @SubscribeEvent
+        public void onTagsUpdated(TagsUpdatedEvent event) {
+            if (event.getUpdateCause() == TagsUpdatedEvent.UpdateCause.CLIENT_PACKET_RECEIVED) {
+                ClientStageLockResolver.clearConfigCache();
+            }
+        }
+
+        /**
+         * Show the table cached on disk for this server, then ask the server for lock data.
+         * The request carries the cached hash, so an unchanged table is only confirmed.
+         */
+        @SubscribeEvent
+        public void onPlayerLoggedIn(ClientPlayerNetworkEvent.LoggingIn event) {
+            LockTableDiskCache.CachedTable cached = LockTableDiskCache.open();
+            if (cached != null) {
+                LockStateCache.setSnapshot(cached.snapshot(), -1, cached.contentHash());
+                ClientStageLockResolver.clearCache();
+                EmiGameStagesLink.LOGGER.debug("Loaded {} cached locks for this server", cached.snapshot().getTotalLockCount());
+            }
+            requestLockDataRefresh();
+        }
+
+        /**
+         * Persist and clear cache when disconnecting from server
          */
         @SubscribeEvent
         public void onPlayerLoggedOut(ClientPlayerNetworkEvent.LoggingOut event) {
+            LockTableDiskCache.close(LockStateCache.getSnapshot(), LockStateCache.getContentHash());
             LockStateCache.clear();
+            ChunkedSyncReceiver.reset();
+            ClientStageLockResolver.clearConfigCache();
+            ClientTaskScheduler.clear();
             EmiGameStagesLink.LOGGER.debug("Cleared lock state cache on disconnect");
         }
 
         /**
          * Handle GameStages sync event on client.
-         * This provides backwards compatibility and triggers EMI refresh
-         * when stages are synced from the server.
+         * Bumps the lock-state version so overlays repaint. EMI is only reloaded when
+         * ItemStages is allowed to hide staged ingredients, since the visible set changed.
          */
         @SubscribeEvent
         public void onStagesSynced(StagesSyncedEvent event) {
-            // Only reload EMI if our visuals are enabled
-            if (!ModConfiguration.showLockIcon && !ModConfiguration.showTooltipInfo && !ModConfiguration.showLockOnItemList) {
-                return;
-            }
-
             // Clear local cache to force re-check
             ClientStageLockResolver.clearCache();
 
-            // Trigger EMI refresh after a short delay to give JEI plugins time to update
-            try {
-                final int delayMs = 600;
-                Thread t = new Thread(() -> {
-                    try {
-                        Thread.sleep(delayMs);
-                    } catch (InterruptedException ignored) {}
-                    triggerEmiRefresh();
-                }, "EmiReload-Delayed-For-StageSync");
-                t.setDaemon(true);
-                t.start();
-            } catch (Throwable t) {
-                EmiGameStagesLink.LOGGER.debug("Unable to schedule EMI reload on stage sync: {}", t.getMessage());
+            // With showLockedRecipes, hiding is cancelled and nothing EMI indexes has changed;
+            // PreventHidePlugin requests its own reload if it had to re-add ingredients
+            if (ModConfiguration.showLockedRecipes) {
+                return;
             }
+
+            // The reload gate waits out a quiet window, giving JEI plugins time to update
+            triggerEmiRefresh();
         }
     }
 }
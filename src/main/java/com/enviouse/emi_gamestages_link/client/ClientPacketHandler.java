@@ -1,27 +1,65 @@
 package com.enviouse.emi_gamestages_link.client;
 
 import com.enviouse.emi_gamestages_link.common.LockSnapshot;
+import com.enviouse.emi_gamestages_link.common.network.S2CLockDataChunkPacket;
+import com.enviouse.emi_gamestages_link.common.network.NetworkHandler;
+import com.enviouse.emi_gamestages_link.common.network.S2CLockDataDeltaPacket;
+import com.enviouse.emi_gamestages_link.common.network.S2CLockDataUnchangedPacket;
 
 /**
  * Client-side packet handler.
  * This class is ONLY loaded on the client via DistExecutor usage in packet handlers.
  * It references client-only code safely.
+ * Lock data only drives overlays and tooltips, so applying it just bumps the
+ * resolver's lock-state version; EMI is not reloaded.
  */
 public class ClientPacketHandler {
 
     /**
      * Handle full lock data sync from server
      */
-    public static void handleFullLockData(LockSnapshot snapshot) {
-        LockStateCache.setSnapshot(snapshot);
-        ClientInit.triggerEmiRefresh();
+    public static void handleFullLockData(LockSnapshot snapshot, int revision, long contentHash) {
+        LockStateCache.setSnapshot(snapshot, revision, contentHash);
+        LockTableDiskCache.save(snapshot, contentHash);
+        ClientStageLockResolver.clearCache();
     }
 
     /**
-     * Handle delta lock data sync from server (stages changed)
+     * Handle the server confirming our cached lock table is current.
+     * Held back while a received table is still decoding. If the table changed under us in the meantime, ask for the full table.
      */
-    public static void handleDeltaLockData(LockSnapshot snapshot) {
-        LockStateCache.setSnapshot(snapshot);
-        ClientInit.triggerEmiRefresh();
+    public static void handleLockDataUnchanged(S2CLockDataUnchangedPacket packet) {
+        if (ChunkedSyncReceiver.deferWhileDecoding(() -> handleLockDataUnchanged(packet))) {
+            return;
+        }
+        if (!LockStateCache.confirmUnchanged(packet.getContentHash(), packet.getRevision(), packet.getStages())) {
+            NetworkHandler.requestLockData(0);
+            return;
+        }
+        ClientStageLockResolver.clearCache();
+    }
+
+    /**
+     * Handle one chunk of a compressed full lock table
+     */
+    public static void handleLockDataChunk(S2CLockDataChunkPacket packet) {
+        ChunkedSyncReceiver.accept(packet);
+    }
+
+    /**
+     * Handle delta lock data sync from server (stages changed).
+     * Held back while a received table is still decoding.
+     * Falls back to requesting a full snapshot if a delta was missed.
+     */
+    public static void handleDeltaLockData(S2CLockDataDeltaPacket packet) {
+        if (ChunkedSyncReceiver.deferWhileDecoding(() -> handleDeltaLockData(packet))) {
+            return;
+        }
+        if (!LockStateCache.applyStageDelta(packet.getBaseRevision(), packet.getRevision(),
+                packet.getAddedStages(), packet.getRemovedStages())) {
+            ClientInit.requestLockDataRefresh();
+            return;
+        }
+        ClientStageLockResolver.clearCache();
     }
 }
@@ -2,10 +2,13 @@ package com.enviouse.emi_gamestages_link.client;
 
 import com.enviouse.emi_gamestages_link.common.ModConfiguration;
 import com.enviouse.emi_gamestages_link.common.LockEntry;
-import com.enviouse.emi_gamestages_link.common.integration.IntegrationManager;
-import com.enviouse.emi_gamestages_link.common.integration.ItemStagesIntegration;
+import com.enviouse.emi_gamestages_link.common.LockSnapshot;
+import dev.emi.emi.api.stack.EmiIngredient;
+import dev.emi.emi.api.stack.EmiStack;
 import net.darkhax.gamestages.GameStageHelper;
 import net.minecraft.client.Minecraft;
+import net.minecraft.core.Holder;
+import net.minecraft.core.registries.BuiltInRegistries;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.tags.TagKey;
 import net.minecraft.world.entity.player.Player;
@@ -14,21 +17,95 @@ import net.minecraft.world.item.ItemStack;
 import net.minecraftforge.registries.ForgeRegistries;
 
 import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Client-side stage lock resolver.
- * Uses server-synced data from LockStateCache when available,
- * with fallback to local detection for immediate responsiveness.
+ * Uses server-synced data from LockStateCache (which includes ItemStages
+ * restrictions resolved on the server), with fallback to config locks.
+ * <p>
+ * The render path uses {@link #getLockedStageId}, which reads a per-item lock state
+ * array rebuilt once after lock data, stages, config or tags change. Config locks are
+ * resolved into an item map once per config or tag change and survive stage changes.
  */
 public class ClientStageLockResolver {
 
-    // Cache for config-based lock resolutions (fallback)
-    private static final Map<String, Optional<String>> localCache = new ConcurrentHashMap<>();
-    private static long lastCacheInvalidation = 0;
-    private static final long CACHE_TTL = 5000;
+    /**
+     * Returned by {@link #getLockedStageId} for items that are not locked
+     */
+    public static final int UNLOCKED = LockStateTable.UNLOCKED;
+
+    // Config-based locks (fallback) per item, null when stale. Item does not override
+    // equals/hashCode, so this is keyed by identity. Cleared by events only, see clearConfigCache.
+    private static volatile Map<Item, String> configStages;
+    private static final AtomicInteger configVersion = new AtomicInteger();
+
+    // Lock state per item registry id, null when stale
+    private static volatile LockStateTable lockStates;
+    private static final AtomicInteger lockStateVersion = new AtomicInteger();
+
+    /**
+     * Get the stage locking an item for the current player, for the per-frame render path.
+     * Allocation free: one registry id probe and one array load. Nothing is locked until
+     * a player exists, since GameStages data cannot be checked before that.
+     *
+     * @return an id for {@link #getStageName}, or {@link #UNLOCKED}
+     */
+    public static int getLockedStageId(Item item) {
+        LockStateTable states = lockStates;
+        if (states == null) {
+            Player player = Minecraft.getInstance().player;
+            if (player == null) {
+                return UNLOCKED;
+            }
+            states = rebuildLockStates(player);
+        }
+        return states.getLockedStageId(BuiltInRegistries.ITEM.getId(item));
+    }
+
+    /**
+     * Get the stage locking an EMI ingredient: the first locked item stack it contains.
+     *
+     * @return an id for {@link #getStageName}, or {@link #UNLOCKED}
+     */
+    public static int getLockedStageId(EmiIngredient ingredient) {
+        if (ingredient instanceof EmiStack single) {
+            // Avoids the list getEmiStacks() wraps a single stack in
+            return single.getKey() instanceof Item item ? getLockedStageId(item) : UNLOCKED;
+        }
+        List<EmiStack> stacks = ingredient.getEmiStacks();
+        for (int i = 0, n = stacks.size(); i < n; i++) {
+            if (stacks.get(i).getKey() instanceof Item item) {
+                int stageId = getLockedStageId(item);
+                if (stageId != UNLOCKED) {
+                    return stageId;
+                }
+            }
+        }
+        return UNLOCKED;
+    }
+
+    /**
+     * @param stageId An id returned by {@link #getLockedStageId}
+     */
+    public static String getStageName(int stageId) {
+        LockStateTable states = lockStates;
+        return states == null ? "" : states.getStageName(stageId);
+    }
+
+    /**
+     * @return a counter bumped whenever lock data, stages, config locks or tags change
+     */
+    public static int getLockStateVersion() {
+        return lockStateVersion.get();
+    }
 
     /**
      * Gets the required stage for an ItemStack.
@@ -38,38 +115,35 @@ public class ClientStageLockResolver {
         if (stack.isEmpty()) {
             return Optional.empty();
         }
+        return getRequiredStage(stack.getItem());
+    }
 
-        ResourceLocation itemId = ForgeRegistries.ITEMS.getKey(stack.getItem());
-        if (itemId == null) {
-            return Optional.empty();
-        }
-
+    private static Optional<String> getRequiredStage(Item item) {
         // Check server-synced lock data first
-        LockEntry serverEntry = LockStateCache.getItemLockEntry(itemId);
+        LockEntry serverEntry = LockStateCache.getItemLockEntry(item);
         if (serverEntry != null) {
             return Optional.of(serverEntry.requiredStage());
         }
 
-        // Fallback to ItemStages local detection (for immediate responsiveness)
-        if (IntegrationManager.isItemStagesLoaded()) {
-            Player player = Minecraft.getInstance().player;
-            if (player != null) {
-                Optional<String> itemStagesResult = ItemStagesIntegration.getRequiredStage(player, stack);
-                if (itemStagesResult.isPresent()) {
-                    return itemStagesResult;
-                }
-            }
-        }
-
         // Fallback to config-based lookups
-        invalidateCacheIfNeeded();
-        return localCache.computeIfAbsent(itemId.toString(), id -> computeConfigStage(stack, id));
+        Map<Item, String> config = configStages;
+        if (config == null) {
+            config = rebuildConfigStages();
+        }
+        return Optional.ofNullable(config.get(item));
     }
 
     /**
      * Checks if an ItemStack is locked for the current player.
      */
     public static boolean isLocked(ItemStack stack) {
+        // Server-synced locks are a single bit test against the synced stage set
+        LockSnapshot snapshot = LockStateCache.getSnapshot();
+        LockEntry serverEntry = getServerEntry(snapshot, stack);
+        if (serverEntry != null) {
+            return !snapshot.isStageUnlocked(serverEntry.stageId());
+        }
+
         Optional<String> requiredStage = getRequiredStage(stack);
         if (requiredStage.isEmpty()) {
             return false;
@@ -94,15 +168,27 @@ public class ClientStageLockResolver {
      */
     @Nullable
     public static LockInfo getLockInfo(ItemStack stack) {
-        Optional<String> requiredStage = getRequiredStage(stack);
+        if (stack.isEmpty()) {
+            return null;
+        }
+        return getLockInfo(LockStateCache.getSnapshot(), Minecraft.getInstance().player, stack.getItem());
+    }
+
+    @Nullable
+    private static LockInfo getLockInfo(LockSnapshot snapshot, @Nullable Player player, Item item) {
+        LockEntry serverEntry = snapshot.getItemLock(item);
+        if (serverEntry != null) {
+            return new LockInfo(serverEntry.requiredStage(), !snapshot.isStageUnlocked(serverEntry.stageId()));
+        }
+
+        Optional<String> requiredStage = getRequiredStage(item);
         if (requiredStage.isEmpty()) {
             return null;
         }
 
-        boolean isLocked = !LockStateCache.hasStage(requiredStage.get());
+        boolean isLocked = !snapshot.hasStage(requiredStage.get());
 
         // Double-check with local data if we have a player
-        Player player = Minecraft.getInstance().player;
         if (player != null && !isLocked) {
             isLocked = !GameStageHelper.hasStage(player, requiredStage.get());
         }
@@ -110,22 +196,66 @@ public class ClientStageLockResolver {
         return new LockInfo(requiredStage.get(), isLocked);
     }
 
-    private static void invalidateCacheIfNeeded() {
-        long now = System.currentTimeMillis();
-        if (now - lastCacheInvalidation > CACHE_TTL) {
-            localCache.clear();
-            lastCacheInvalidation = now;
+    /**
+     * Look up a server-synced lock in the given snapshot, so the entry's stage id
+     * is tested against the same snapshot's stage bits.
+     */
+    @Nullable
+    private static LockEntry getServerEntry(LockSnapshot snapshot, ItemStack stack) {
+        return stack.isEmpty() ? null : snapshot.getItemLock(stack.getItem());
+    }
+
+    /**
+     * Resolve every registered item once into the lock state table read by the render path.
+     * A rebuild that races with an invalidation is returned but not kept.
+     */
+    private static LockStateTable rebuildLockStates(Player player) {
+        int version = lockStateVersion.get();
+        LockSnapshot snapshot = LockStateCache.getSnapshot();
+
+        int[] states = new int[BuiltInRegistries.ITEM.size()];
+        Arrays.fill(states, UNLOCKED);
+        Map<String, Integer> stageIds = new HashMap<>();
+        List<String> stageNames = new ArrayList<>();
+        for (Item item : BuiltInRegistries.ITEM) {
+            int id = BuiltInRegistries.ITEM.getId(item);
+            if (id < 0 || id >= states.length) {
+                continue;
+            }
+            LockInfo info = getLockInfo(snapshot, player, item);
+            if (info != null && info.isLocked()) {
+                states[id] = stageIds.computeIfAbsent(info.stageName(), name -> {
+                    stageNames.add(name);
+                    return stageNames.size() - 1;
+                });
+            }
+        }
+
+        LockStateTable table = new LockStateTable(states, stageNames.toArray(new String[0]));
+        if (lockStateVersion.get() == version) {
+            lockStates = table;
         }
+        return table;
     }
 
+    /**
+     * Resolve config item and tag locks into a map, parsing each tag once and walking its
+     * members like the server does. Direct item locks win, then tags in config order.
+     * A rebuild that races with an invalidation is returned but not kept.
+     */
+    private static Map<Item, String> rebuildConfigStages() {
+        int version = configVersion.get();
+        Map<Item, String> stages = new IdentityHashMap<>();
 
-    private static Optional<String> computeConfigStage(ItemStack stack, String itemId) {
-        // Check direct item locks from config
-        if (ModConfiguration.itemLocks.containsKey(itemId)) {
-            return Optional.of(ModConfiguration.itemLocks.get(itemId));
+        // Direct item locks from config
+        for (Map.Entry<String, String> entry : ModConfiguration.itemLocks.entrySet()) {
+            ResourceLocation itemId = ResourceLocation.tryParse(entry.getKey());
+            if (itemId != null) {
+                BuiltInRegistries.ITEM.getOptional(itemId).ifPresent(item -> stages.putIfAbsent(item, entry.getValue()));
+            }
         }
 
-        // Check tag locks from config
+        // Tag locks from config
         for (Map.Entry<String, String> entry : ModConfiguration.tagLocks.entrySet()) {
             String tagStr = entry.getKey();
             if (tagStr.startsWith("#")) {
@@ -133,23 +263,36 @@ public class ClientStageLockResolver {
             }
 
             ResourceLocation tagId = ResourceLocation.tryParse(tagStr);
-            if (tagId != null) {
-                TagKey<Item> tagKey = TagKey.create(ForgeRegistries.ITEMS.getRegistryKey(), tagId);
-                if (stack.is(tagKey)) {
-                    return Optional.of(entry.getValue());
-                }
+            if (tagId == null) {
+                continue;
+            }
+            TagKey<Item> tagKey = TagKey.create(ForgeRegistries.ITEMS.getRegistryKey(), tagId);
+            for (Holder<Item> holder : BuiltInRegistries.ITEM.getTagOrEmpty(tagKey)) {
+                stages.putIfAbsent(holder.value(), entry.getValue());
             }
         }
 
-        return Optional.empty();
+        if (configVersion.get() == version) {
+            configStages = stages;
+        }
+        return stages;
     }
 
     /**
-     * Clear the local cache (called when server data is received)
+     * Invalidate lock states after lock data or stages change. Config locks are kept.
      */
     public static void clearCache() {
-        localCache.clear();
-        lastCacheInvalidation = System.currentTimeMillis();
+        lockStateVersion.incrementAndGet();
+        lockStates = null;
+    }
+
+    /**
+     * Invalidate config locks as well, after the config is reloaded or tags are updated
+     */
+    public static void clearConfigCache() {
+        configVersion.incrementAndGet();
+        configStages = null;
+        clearCache();
     }
 
     /**
@@ -0,0 +1,140 @@
+package com.enviouse.emi_gamestages_link.client;
+
+import com.enviouse.emi_gamestages_link.common.EmiGameStagesLink;
+import net.minecraft.client.Minecraft;
+import net.minecraftforge.event.TickEvent;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs named, delayed client tasks from the client tick instead of sleeping threads.
+ * <p>
+ * Scheduling a name that is already pending does not queue a second run: the pending
+ * task keeps its due tick and adopts the latest action, so bursts of triggers collapse
+ * into one execution. Repeating tasks restart their run count instead of stacking.
+ * Tasks run on the client thread at the end of the client tick.
+ */
+public class ClientTaskScheduler {
+
+    private static final Map<String, Task> TASKS = new LinkedHashMap<>();
+    private static long tick = 0;
+
+    /**
+     * Run a task once after the given delay, unless one with the same name is already pending
+     */
+    public static void schedule(String name, int delayTicks, Runnable action) {
+        scheduleRepeating(name, delayTicks, 0, 1, action);
+    }
+
+    /**
+     * Run a task {@code runs} times, the first after {@code delayTicks} and then every
+     * {@code intervalTicks}. Rescheduling a pending task restarts its remaining runs.
+     */
+    public static void scheduleRepeating(String name, int delayTicks, int intervalTicks, int runs, Runnable action) {
+        Minecraft mc = Minecraft.getInstance();
+        if (!mc.isSameThread()) {
+            mc.execute(() -> scheduleRepeating(name, delayTicks, intervalTicks, runs, action));
+            return;
+        }
+
+        Task task = TASKS.get(name);
+        if (task == null) {
+            TASKS.put(name, new Task(action, tick + Math.max(1, delayTicks), intervalTicks, runs));
+            return;
+        }
+        task.action = action;
+        task.intervalTicks = intervalTicks;
+        task.remainingRuns = Math.max(task.remainingRuns, runs);
+    }
+
+    /**
+     * Cancel a pending task
+     */
+    public static void cancel(String name) {
+        Minecraft mc = Minecraft.getInstance();
+        if (!mc.isSameThread()) {
+            mc.execute(() -> cancel(name));
+            return;
+        }
+        TASKS.remove(name);
+    }
+
+    /**
+     * @return true if a task with this name is waiting to run
+     */
+    public static boolean isScheduled(String name) {
+        return TASKS.containsKey(name);
+    }
+
+    /**
+     * @return number of client ticks counted so far
+     */
+    public static long getTick() {
+        return tick;
+    }
+
+    /**
+     * Drop all pending tasks (on disconnect)
+     */
+    public static void clear() {
+        TASKS.clear();
+    }
+
+    /**
+     * Run every task that is due. Registered on the Forge event bus by {@link ClientInit}.
+     */
+    public static void onClientTick(TickEvent.ClientTickEvent event) {
+        if (event.phase != TickEvent.Phase.END) {
+            return;
+        }
+        tick++;
+        if (TASKS.isEmpty()) {
+            return;
+        }
+
+        // Collect first, tasks may schedule or cancel other tasks while running
+        List<Task> due = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        Iterator<Map.Entry<String, Task>> it = TASKS.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Task> entry = it.next();
+            Task task = entry.getValue();
+            if (task.dueTick > tick) {
+                continue;
+            }
+            due.add(task);
+            names.add(entry.getKey());
+            if (--task.remainingRuns > 0) {
+                task.dueTick = tick + Math.max(1, task.intervalTicks);
+            } else {
+                it.remove();
+            }
+        }
+
+        for (int i = 0; i < due.size(); i++) {
+            try {
+                due.get(i).action.run();
+            } catch (Throwable t) {
+                EmiGameStagesLink.LOGGER.debug("Scheduled client task {} failed: {}", names.get(i), t.getMessage());
+            }
+        }
+    }
+
+    private static class Task {
+        Runnable action;
+        long dueTick;
+        int intervalTicks;
+        int remainingRuns;
+
+        Task(Runnable action, long dueTick, int intervalTicks, int remainingRuns) {
+            this.action = action;
+            this.dueTick = dueTick;
+            this.intervalTicks = intervalTicks;
+            this.remainingRuns = remainingRuns;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.enviouse.emi_gamestages_link.client;
+
+import com.enviouse.emi_gamestages_link.common.EmiGameStagesLink;
+import dev.emi.emi.runtime.EmiReloadManager;
+import net.minecraft.client.Minecraft;
+
+/**
+ * Coalesces EMI reload requests.
+ * <p>
+ * Each request bumps the requested generation. A reload runs only once no new request
+ * has arrived for {@link #QUIET_TICKS} and EMI is not already reloading, and it completes
+ * every generation requested up to that point, so a burst of requests (full table,
+ * stage sync, re-added ingredients...) costs at most one trailing reload.
+ * Client thread only.
+ */
+public class EmiReloadGate {
+
+    // About 600 ms, long enough for JEI plugins to finish hiding/re-adding after a stage sync
+    private static final int QUIET_TICKS = 12;
+    private static final String TASK = "emi_reload_gate";
+
+    private static int requestedGeneration = 0;
+    private static int completedGeneration = 0;
+    private static long lastRequestTick = 0;
+
+    private static long requestedReloads = 0;
+    private static long executedReloads = 0;
+
+    /**
+     * Ask for an EMI reload. Safe from any thread.
+     */
+    public static void request() {
+        Minecraft mc = Minecraft.getInstance();
+        if (!mc.isSameThread()) {
+            mc.execute(EmiReloadGate::request);
+            return;
+        }
+
+        requestedGeneration++;
+        requestedReloads++;
+        lastRequestTick = ClientTaskScheduler.getTick();
+        ClientTaskScheduler.schedule(TASK, QUIET_TICKS, EmiReloadGate::poll);
+    }
+
+    /**
+     * @return true if a requested reload has not run yet
+     */
+    public static boolean isPending() {
+        return requestedGeneration != completedGeneration;
+    }
+
+    /**
+     * @return number of reloads requested since the game started
+     */
+    public static long getRequestedReloads() {
+        return requestedReloads;
+    }
+
+    /**
+     * @return number of reloads actually executed since the game started
+     */
+    public static long getExecutedReloads() {
+        return executedReloads;
+    }
+
+    private static void poll() {
+        if (!isPending()) {
+            return;
+        }
+
+        // Trailing edge: wait until requests have been quiet for a full window
+        long quietFor = ClientTaskScheduler.getTick() - lastRequestTick;
+        if (quietFor < QUIET_TICKS) {
+            ClientTaskScheduler.schedule(TASK, (int) (QUIET_TICKS - quietFor), EmiReloadGate::poll);
+            return;
+        }
+
+        try {
+            if (!EmiReloadManager.isLoaded()) {
+                // EMI is (re)loading already; check again once it has had time to finish
+                ClientTaskScheduler.schedule(TASK, QUIET_TICKS, EmiReloadGate::poll);
+                return;
+            }
+
+            completedGeneration = requestedGeneration;
+            executedReloads++;
+            EmiReloadManager.reload();
+            EmiGameStagesLink.LOGGER.debug("Triggered EMI reload for generation {} ({} requested, {} executed)",
+                    completedGeneration, requestedReloads, executedReloads);
+        } catch (Throwable t) {
+            completedGeneration = requestedGeneration;
+            EmiGameStagesLink.LOGGER.debug("Unable to trigger EMI reload: {}", t.getMessage());
+        }
+    }
+}
@@ -3,17 +3,110 @@ package com.enviouse.emi_gamestages_link.client;
 import com.enviouse.emi_gamestages_link.common.EmiGameStagesLink;
 import com.enviouse.emi_gamestages_link.common.ModConfiguration;
 import com.mojang.blaze3d.systems.RenderSystem;
+import com.mojang.blaze3d.vertex.BufferBuilder;
+import com.mojang.blaze3d.vertex.BufferUploader;
+import com.mojang.blaze3d.vertex.DefaultVertexFormat;
+import com.mojang.blaze3d.vertex.Tesselator;
+import com.mojang.blaze3d.vertex.VertexFormat;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import net.minecraft.client.gui.GuiGraphics;
+import net.minecraft.client.renderer.GameRenderer;
 import net.minecraft.resources.ResourceLocation;
+import org.joml.Matrix4f;
 
 /**
  * Helper class for rendering lock overlays.
+ * <p>
+ * Between {@link #beginBatch()} and {@link #endBatch(GuiGraphics)}, icons and highlights
+ * are only queued and then drawn together: one flush, one state setup, one buffer of
+ * highlight quads and one of icon quads. Outside a batch, or with batching disabled in
+ * the config, each call draws immediately as before. Render thread only.
  */
 public class LockRenderHelper {
 
     // Lock icon texture
     public static final ResourceLocation LOCK_ICON = ResourceLocation.fromNamespaceAndPath(EmiGameStagesLink.MODID, "textures/gui/pixellock.png");
 
+    // Queued icons as x, y pairs and highlights as x, y, width, height, color
+    private static final IntArrayList queuedIcons = new IntArrayList();
+    private static final IntArrayList queuedHighlights = new IntArrayList();
+    private static boolean batching = false;
+
+    /**
+     * Start collecting lock icons and highlights instead of drawing them one by one
+     */
+    public static void beginBatch() {
+        batching = ModConfiguration.batchLockRendering;
+        queuedIcons.clear();
+        queuedHighlights.clear();
+    }
+
+    /**
+     * Draw everything queued since {@link #beginBatch()} on top of the current pass
+     */
+    public static void endBatch(GuiGraphics graphics) {
+        if (!batching) {
+            return;
+        }
+        batching = false;
+        if (queuedIcons.isEmpty() && queuedHighlights.isEmpty()) {
+            return;
+        }
+
+        // One flush so everything already batched by vanilla is below us
+        graphics.flush();
+        Matrix4f matrix = graphics.pose().last().pose();
+        RenderSystem.enableBlend();
+        RenderSystem.defaultBlendFunc();
+
+        if (!queuedHighlights.isEmpty()) {
+            // Highlights keep the depth test, like fill(), so they tint the slot behind the item
+            RenderSystem.setShader(GameRenderer::getPositionColorShader);
+            BufferBuilder buffer = Tesselator.getInstance().getBuilder();
+            buffer.begin(VertexFormat.Mode.QUADS, DefaultVertexFormat.POSITION_COLOR);
+            for (int i = 0; i < queuedHighlights.size(); i += 5) {
+                int x = queuedHighlights.getInt(i);
+                int y = queuedHighlights.getInt(i + 1);
+                int x2 = x + queuedHighlights.getInt(i + 2);
+                int y2 = y + queuedHighlights.getInt(i + 3);
+                int color = queuedHighlights.getInt(i + 4);
+                int a = color >>> 24;
+                int r = (color >> 16) & 0xFF;
+                int g = (color >> 8) & 0xFF;
+                int b = color & 0xFF;
+                buffer.vertex(matrix, x, y, 0).color(r, g, b, a).endVertex();
+                buffer.vertex(matrix, x, y2, 0).color(r, g, b, a).endVertex();
+                buffer.vertex(matrix, x2, y2, 0).color(r, g, b, a).endVertex();
+                buffer.vertex(matrix, x2, y, 0).color(r, g, b, a).endVertex();
+            }
+            BufferUploader.drawWithShader(buffer.end());
+        }
+
+        if (!queuedIcons.isEmpty()) {
+            // Icons go on top of everything
+            RenderSystem.disableDepthTest();
+            RenderSystem.setShader(GameRenderer::getPositionTexShader);
+            RenderSystem.setShaderTexture(0, LOCK_ICON);
+            int size = ModConfiguration.iconSize;
+            BufferBuilder buffer = Tesselator.getInstance().getBuilder();
+            buffer.begin(VertexFormat.Mode.QUADS, DefaultVertexFormat.POSITION_TEX);
+            for (int i = 0; i < queuedIcons.size(); i += 2) {
+                int x = queuedIcons.getInt(i);
+                int y = queuedIcons.getInt(i + 1);
+                buffer.vertex(matrix, x, y, 1000).uv(0, 0).endVertex();
+                buffer.vertex(matrix, x, y + size, 1000).uv(0, 1).endVertex();
+                buffer.vertex(matrix, x + size, y + size, 1000).uv(1, 1).endVertex();
+                buffer.vertex(matrix, x + size, y, 1000).uv(1, 0).endVertex();
+            }
+            BufferUploader.drawWithShader(buffer.end());
+            RenderSystem.enableDepthTest();
+        }
+
+        RenderSystem.disableBlend();
+        queuedIcons.clear();
+        queuedHighlights.clear();
+    }
+
     /**
      * Draws the lock icon at the specified position.
      * Renders on top of everything by using flush, high z-level, and disabled depth test.
@@ -27,6 +120,12 @@ public class LockRenderHelper {
             return;
         }
 
+        if (batching) {
+            queuedIcons.add(x);
+            queuedIcons.add(y);
+            return;
+        }
+
         int iconSize = ModConfiguration.iconSize;
 
         // Flush any pending renders to ensure our icon draws on top
@@ -77,6 +176,14 @@ public class LockRenderHelper {
         }
 
         int color = ModConfiguration.highlightColor;
+        if (batching) {
+            queuedHighlights.add(x);
+            queuedHighlights.add(y);
+            queuedHighlights.add(width);
+            queuedHighlights.add(height);
+            queuedHighlights.add(color);
+            return;
+        }
         graphics.fill(x, y, x + width, y + height, color);
     }
 }
@@ -4,8 +4,12 @@ import com.enviouse.emi_gamestages_link.common.EmiGameStagesLink;
 import com.enviouse.emi_gamestages_link.common.LockEntry;
 import com.enviouse.emi_gamestages_link.common.LockSnapshot;
 import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.item.Item;
 
 import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
 
 /**
  * Client-side cache for lock state data received from the server.
@@ -14,18 +18,67 @@ import javax.annotation.Nullable;
 public class LockStateCache {
 
     private static volatile LockSnapshot currentSnapshot = new LockSnapshot();
+    private static volatile int revision = -1;
+    private static volatile long contentHash = 0;
 
     /**
      * Set the current snapshot (called when receiving data from server)
      */
-    public static void setSnapshot(LockSnapshot snapshot) {
+    public static void setSnapshot(LockSnapshot snapshot, int snapshotRevision, long snapshotHash) {
+        // Materialize the registry-id lookup array now rather than on the first rendered frame
+        snapshot.getIndex().getItemLocksById();
         currentSnapshot = snapshot;
+        revision = snapshotRevision;
+        contentHash = snapshotHash;
         EmiGameStagesLink.LOGGER.debug("Updated lock state cache: {} item locks, {} recipe locks, {} unlocked stages",
                 snapshot.getItemLocks().size(),
                 snapshot.getRecipeLocks().size(),
                 snapshot.getUnlockedStages().size());
     }
 
+    /**
+     * Apply a stage delta on top of the cached snapshot.
+     *
+     * @return false if the delta does not follow the cached revision and a full resync is needed
+     */
+    public static boolean applyStageDelta(int baseRevision, int newRevision,
+                                          Collection<String> added, Collection<String> removed) {
+        if (baseRevision != revision) {
+            EmiGameStagesLink.LOGGER.debug("Stage delta base revision {} does not match cached revision {}",
+                    baseRevision, revision);
+            return false;
+        }
+
+        LockSnapshot snapshot = currentSnapshot;
+        Set<String> stages = new HashSet<>(snapshot.getUnlockedStages());
+        stages.removeAll(removed);
+        stages.addAll(added);
+        currentSnapshot = new LockSnapshot(snapshot.getIndex(), stages);
+        revision = newRevision;
+        return true;
+    }
+
+    /**
+     * Replace the stage set after the server confirmed our cached table is current.
+     *
+     * @return false if the server's table hash is not the one we hold
+     */
+    public static boolean confirmUnchanged(long serverHash, int newRevision, Collection<String> stages) {
+        if (serverHash != contentHash) {
+            return false;
+        }
+        currentSnapshot = new LockSnapshot(currentSnapshot.getIndex(), stages);
+        revision = newRevision;
+        return true;
+    }
+
+    /**
+     * @return content hash of the cached lock table, or 0 if none has been received
+     */
+    public static long getContentHash() {
+        return contentHash;
+    }
+
     /**
      * Get the current snapshot
      */
@@ -55,6 +108,14 @@ public class LockStateCache {
         return currentSnapshot.getItemLock(itemId);
     }
 
+    /**
+     * Get lock info for an item by registry id, without hashing
+     */
+    @Nullable
+    public static LockEntry getItemLockEntry(Item item) {
+        return currentSnapshot.getItemLock(item);
+    }
+
     /**
      * Get lock info for a recipe
      */
@@ -75,5 +136,7 @@ public class LockStateCache {
      */
     public static void clear() {
         currentSnapshot = new LockSnapshot();
+        revision = -1;
+        contentHash = 0;
     }
 }
@@ -0,0 +1,37 @@
+package com.enviouse.emi_gamestages_link.client;
+
+/**
+ * Immutable per-item lock states read by the render path: the locked stage id for
+ * each item registry id, and the names those ids refer to. Lookups are a bounds check
+ * and an array load, with no allocation.
+ */
+final class LockStateTable {
+
+    static final int UNLOCKED = -1;
+
+    private final int[] stageIds;
+    private final String[] stageNames;
+
+    /**
+     * @param stageIds   Stage id per item registry id, {@link #UNLOCKED} if not locked
+     * @param stageNames Stage name per stage id
+     */
+    LockStateTable(int[] stageIds, String[] stageNames) {
+        this.stageIds = stageIds;
+        this.stageNames = stageNames;
+    }
+
+    /**
+     * @return the stage id locking the item with this registry id, or {@link #UNLOCKED}
+     */
+    int getLockedStageId(int registryId) {
+        return registryId >= 0 && registryId < stageIds.length ? stageIds[registryId] : UNLOCKED;
+    }
+
+    /**
+     * @return the name of a stage id, or an empty string if unknown
+     */
+    String getStageName(int stageId) {
+        return stageId >= 0 && stageId < stageNames.length ? stageNames[stageId] : "";
+    }
+}
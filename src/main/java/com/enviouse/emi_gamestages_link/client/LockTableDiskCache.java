@@ -0,0 +1,157 @@
+package com.enviouse.emi_gamestages_link.client;
+
+import com.enviouse.emi_gamestages_link.common.EmiGameStagesLink;
+import com.enviouse.emi_gamestages_link.common.LockIndex;
+import com.enviouse.emi_gamestages_link.common.LockSnapshot;
+import com.enviouse.emi_gamestages_link.common.ModConfiguration;
+import com.google.common.hash.Hashing;
+import io.netty.buffer.Unpooled;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.multiplayer.ServerData;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraftforge.fml.loading.FMLPaths;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persists the last lock table received from each multiplayer server, so lock
+ * overlays can be shown immediately on the next join. The server then only has
+ * to confirm the cached table by hash (or send a full table if it changed).
+ * <p>
+ * File layout: magic, file version, content hash, stage list, encoded table.
+ * Files are read whole for loading and written atomically off the client thread,
+ * one write at a time so writes never share the temp file.
+ */
+public class LockTableDiskCache {
+
+    private static final int MAGIC = 0x45475343; // "EGSC"
+    private static final int FILE_VERSION = 1;
+
+    // Single writer thread, not a daemon so the write queued on disconnect finishes on exit
+    private static final ExecutorService WRITER;
+
+    static {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 10, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> new Thread(runnable, "EmiGameStagesLink-CacheWriter"));
+        executor.allowCoreThreadTimeOut(true);
+        WRITER = executor;
+    }
+
+    // Cache file of the server we are connected to, bound at login (client thread only)
+    @Nullable
+    private static Path activeFile;
+
+    /**
+     * Bind the cache file for the server being joined and load its table, if any.
+     *
+     * @return the cached snapshot and hash, or null if there is no usable cache file
+     */
+    @Nullable
+    public static CachedTable open() {
+        activeFile = ModConfiguration.persistLockCache ? getCacheFile() : null;
+        Path file = activeFile;
+        if (file == null || !Files.isRegularFile(file)) {
+            return null;
+        }
+
+        try {
+            // Read onto the heap rather than mapping, a live mapping blocks replacing the file on Windows
+            FriendlyByteBuf buf = new FriendlyByteBuf(Unpooled.wrappedBuffer(Files.readAllBytes(file)));
+            if (buf.readInt() != MAGIC || buf.readInt() != FILE_VERSION) {
+                return null;
+            }
+            long contentHash = buf.readLong();
+            int stageCount = buf.readVarInt();
+            List<String> stages = new ArrayList<>(stageCount);
+            for (int i = 0; i < stageCount; i++) {
+                stages.add(buf.readUtf());
+            }
+            LockIndex index = LockIndex.fromNetwork(buf);
+            return new CachedTable(new LockSnapshot(index, stages), contentHash);
+        } catch (Exception e) {
+            EmiGameStagesLink.LOGGER.debug("Ignoring unreadable lock table cache {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Write the given table for the current server, off the client thread.
+     */
+    public static void save(LockSnapshot snapshot, long contentHash) {
+        Path file = activeFile;
+        if (file == null || contentHash == 0) {
+            return;
+        }
+        WRITER.execute(() -> write(file, snapshot, contentHash));
+    }
+
+    /**
+     * Persist the final table and stages and unbind the cache file (on disconnect)
+     */
+    public static void close(LockSnapshot snapshot, long contentHash) {
+        save(snapshot, contentHash);
+        activeFile = null;
+    }
+
+    private static void write(Path file, LockSnapshot snapshot, long contentHash) {
+        FriendlyByteBuf buf = new FriendlyByteBuf(Unpooled.buffer());
+        try {
+            buf.writeInt(MAGIC);
+            buf.writeInt(FILE_VERSION);
+            buf.writeLong(contentHash);
+            buf.writeVarInt(snapshot.getUnlockedStages().size());
+            for (String stage : snapshot.getUnlockedStages()) {
+                buf.writeUtf(stage);
+            }
+            snapshot.getIndex().toNetwork(buf);
+
+            Files.createDirectories(file.getParent());
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                channel.write(buf.nioBuffer());
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            EmiGameStagesLink.LOGGER.warn("Unable to write lock table cache {}: {}", file, e.getMessage());
+        } finally {
+            buf.release();
+        }
+    }
+
+    /**
+     * @return the cache file for the current multiplayer server, or null in singleplayer
+     */
+    @Nullable
+    private static Path getCacheFile() {
+        ServerData server = Minecraft.getInstance().getCurrentServer();
+        if (server == null || server.ip == null || server.ip.isEmpty()) {
+            return null;
+        }
+        String key = Hashing.sha256()
+                .hashString(server.ip.toLowerCase(Locale.ROOT), StandardCharsets.UTF_8)
+                .toString()
+                .substring(0, 32);
+        return FMLPaths.GAMEDIR.get()
+                .resolve(EmiGameStagesLink.MODID)
+                .resolve("cache")
+                .resolve(key + ".bin");
+    }
+
+    public record CachedTable(LockSnapshot snapshot, long contentHash) {}
+}
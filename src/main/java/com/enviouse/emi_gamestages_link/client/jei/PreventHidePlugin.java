@@ -1,5 +1,7 @@
 package com.enviouse.emi_gamestages_link.client.jei;
 
+import com.enviouse.emi_gamestages_link.client.ClientInit;
+import com.enviouse.emi_gamestages_link.client.ClientTaskScheduler;
 import com.enviouse.emi_gamestages_link.common.EmiGameStagesLink;
 import com.enviouse.emi_gamestages_link.common.ModConfiguration;
 import mezz.jei.api.IModPlugin;
@@ -9,37 +11,68 @@ import mezz.jei.api.ingredients.IIngredientHelper;
 import mezz.jei.api.ingredients.ITypedIngredient;
 import mezz.jei.api.runtime.IIngredientManager;
 import mezz.jei.api.runtime.IJeiRuntime;
-import mezz.jei.api.helpers.IJeiHelpers;
-import net.darkhax.gamestages.event.StagesSyncedEvent;
 import net.minecraft.client.Minecraft;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.world.item.Item;
 import net.minecraft.world.item.ItemStack;
-import net.minecraftforge.client.event.RecipesUpdatedEvent;
-import net.minecraftforge.common.MinecraftForge;
-import net.minecraftforge.eventbus.api.EventPriority;
 import net.minecraftforge.registries.ForgeRegistries;
 
+import javax.annotation.Nullable;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 
+/**
+ * Keeps JEI (and therefore EMI through JEMI) from hiding staged ingredients when
+ * {@link ModConfiguration#showLockedRecipes} is enabled.
+ * <p>
+ * Stacks removed while the runtime is up are caught by an ingredient listener, tracked
+ * by identity and re-added in one batch on the next tick. Removals that happened before
+ * the listener was registered are found by a single full registry diff per JEI reload.
+ */
 @JeiPlugin
 public class PreventHidePlugin implements IModPlugin {
 
     private static final ResourceLocation PLUGIN_ID = ResourceLocation.fromNamespaceAndPath(EmiGameStagesLink.MODID, "prevent_hide");
+    private static final String READD_TASK = "prevent_hide_readd";
+    private static final String FULL_DIFF_TASK = "prevent_hide_full_diff";
+    private static final String VISIBILITY_TASK = "prevent_hide_visibility";
+
+    // Time spent sending JEI visibility notifications per client tick
+    private static final long VISIBILITY_BUDGET_NANOS = 2_000_000L;
+    private static final long LOG_INTERVAL_MS = 10_000L;
+
+    // notifyListeners handle, resolved once for the visibility class it belongs to
+    private static Class<?> notifyHandleOwner;
+    private static MethodHandle notifyHandle;
+    private static long lastInfoLog = 0;
+
+    // Give plugins that hide ingredients from their own onRuntimeAvailable time to run first
+    private static final int FULL_DIFF_DELAY_TICKS = 20;
 
     private IJeiRuntime runtime;
 
-    public PreventHidePlugin() {
-        // Listen for stage syncs and recipe updates — schedule re-add attempts to run on client thread
-        MinecraftForge.EVENT_BUS.addListener(EventPriority.NORMAL, false, StagesSyncedEvent.class, e -> scheduleReadd());
-        MinecraftForge.EVENT_BUS.addListener(EventPriority.LOWEST, false, RecipesUpdatedEvent.class, e -> scheduleReadd());
-    }
+    // Set when a re-add asked EMI to reload. The runtime that reload brings up (JEMI) must not
+    // request another while plugins re-hide on start, or EMI would keep reloading; removals
+    // after the full diff (e.g. on stage changes) request reloads again
+    private boolean reloadRequested = false;
+    private boolean runtimeFromOwnReload = false;
+
+    // Stacks removed through the listener and not re-added yet (client thread only)
+    private final Set<ItemStack> pendingReadd = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    // Re-added stacks waiting for their visibility notification (client thread only)
+    private final ArrayDeque<ItemStack> pendingVisibility = new ArrayDeque<>();
+    private int visibilityNotified = 0;
 
     @Override
     public ResourceLocation getPluginUid() {
@@ -49,8 +82,12 @@ public class PreventHidePlugin implements IModPlugin {
     @Override
     public void onRuntimeAvailable(IJeiRuntime jeiRuntime) {
         this.runtime = jeiRuntime;
+        this.runtimeFromOwnReload = this.reloadRequested;
+        this.reloadRequested = false;
+        this.pendingReadd.clear();
+        this.pendingVisibility.clear();
         EmiGameStagesLink.LOGGER.info("PreventHidePlugin: JEI runtime available");
-        // Register a listener so we can immediately re-add any ItemStack ingredients removed by other plugins
+        // Register a listener so we can re-add any ItemStack ingredients removed by other plugins
         try {
             IIngredientManager mgr = this.runtime.getIngredientManager();
             mgr.registerIngredientListener(new IIngredientManager.IIngredientListener() {
@@ -63,29 +100,16 @@ public class PreventHidePlugin implements IModPlugin {
                 public <V> void onIngredientsRemoved(IIngredientHelper<V> ingredientHelper, Collection<ITypedIngredient<V>> ingredients) {
                     if (!ModConfiguration.showLockedRecipes) return;
                     try {
-                        List<ItemStack> toReadd = new ArrayList<>();
+                        List<ItemStack> removed = new ArrayList<>();
                         for (ITypedIngredient<V> typed : ingredients) {
                             try {
-                                Object raw = typed.getIngredient();
-                                if (raw instanceof ItemStack is) {
-                                    toReadd.add(is);
+                                if (typed.getIngredient() instanceof ItemStack is) {
+                                    removed.add(is);
                                 }
                             } catch (Throwable ignored) {}
                         }
-                        if (!toReadd.isEmpty()) {
-                            // Re-add immediately on client thread
-                            Minecraft mc = Minecraft.getInstance();
-                            if (mc != null) {
-                                mc.execute(() -> {
-                                    try {
-                                        mgr.addIngredientsAtRuntime(VanillaTypes.ITEM_STACK, toReadd);
-                                        EmiGameStagesLink.LOGGER.info("PreventHidePlugin: re-added {} stacks from removal listener", toReadd.size());
-                                        refreshIngredientVisibility(mgr, toReadd);
-                                    } catch (Throwable t) { EmiGameStagesLink.LOGGER.debug("PreventHidePlugin readd in listener failed: {}", t.getMessage()); }
-                                });
-                            } else {
-                                try { mgr.addIngredientsAtRuntime(VanillaTypes.ITEM_STACK, toReadd); EmiGameStagesLink.LOGGER.info("PreventHidePlugin: re-added {} stacks from removal listener", toReadd.size()); refreshIngredientVisibility(mgr, toReadd); } catch (Throwable t) { EmiGameStagesLink.LOGGER.debug("PreventHidePlugin readd in listener failed: {}", t.getMessage()); }
-                            }
+                        if (!removed.isEmpty()) {
+                            trackRemoved(removed);
                         }
                     } catch (Throwable t) {
                         EmiGameStagesLink.LOGGER.debug("PreventHidePlugin listener failed: {}", t.getMessage());
@@ -97,34 +121,60 @@ public class PreventHidePlugin implements IModPlugin {
             EmiGameStagesLink.LOGGER.debug("PreventHidePlugin failed to register ingredient listener: {}", t.getMessage());
         }
 
-        scheduleReadd();
+        // One full registry diff for this JEI reload, for anything hidden before the listener existed
+        if (!ModConfiguration.showLockedRecipes) {
+            runtimeFromOwnReload = false;
+        } else {
+            ClientTaskScheduler.schedule(FULL_DIFF_TASK, FULL_DIFF_DELAY_TICKS, () -> {
+                runtimeFromOwnReload = false;
+                try { readdAllIfEnabled(); } catch (Throwable t) { EmiGameStagesLink.LOGGER.debug("PreventHidePlugin readd failed: {}", t.getMessage()); }
+            });
+        }
     }
 
-    private void scheduleReadd() {
-        if (!ModConfiguration.showLockedRecipes) return;
+    @Override
+    public void onRuntimeUnavailable() {
+        this.runtime = null;
+        this.pendingReadd.clear();
+        this.pendingVisibility.clear();
+        ClientTaskScheduler.cancel(READD_TASK);
+        ClientTaskScheduler.cancel(VISIBILITY_TASK);
+        ClientTaskScheduler.cancel(FULL_DIFF_TASK);
+    }
+
+    /**
+     * Remember removed stacks and re-add them all together on the next tick.
+     * Removals from several plugins in the same tick collapse into one batch.
+     */
+    private void trackRemoved(List<ItemStack> removed) {
         Minecraft mc = Minecraft.getInstance();
-        // Run a repeated re-add for a few seconds to outrun other plugins that may hide later
-        final int totalMs = 6000;
-        final int intervalMs = 250;
-        Thread t = new Thread(() -> {
-            int iterations = Math.max(1, totalMs / intervalMs);
-            for (int i = 0; i < iterations; i++) {
-                try {
-                    if (mc != null) {
-                        mc.execute(() -> {
-                            try { readdAllIfEnabled(); } catch (Throwable t2) { EmiGameStagesLink.LOGGER.debug("PreventHidePlugin readd failed: {}", t2.getMessage()); }
-                        });
-                    } else {
-                        try { readdAllIfEnabled(); } catch (Throwable t2) { EmiGameStagesLink.LOGGER.debug("PreventHidePlugin readd failed: {}", t2.getMessage()); }
-                    }
-                    Thread.sleep(intervalMs);
-                } catch (InterruptedException ignored) {
-                    break;
-                } catch (Throwable ignored) {}
+        if (!mc.isSameThread()) {
+            mc.execute(() -> trackRemoved(removed));
+            return;
+        }
+        pendingReadd.addAll(removed);
+        ClientTaskScheduler.schedule(READD_TASK, 1, this::readdPending);
+    }
+
+    private void readdPending() {
+        if (pendingReadd.isEmpty()) return;
+        List<ItemStack> toReadd = new ArrayList<>(pendingReadd);
+        pendingReadd.clear();
+        if (!ModConfiguration.showLockedRecipes || this.runtime == null) return;
+
+        try {
+            IIngredientManager mgr = this.runtime.getIngredientManager();
+            mgr.addIngredientsAtRuntime(VanillaTypes.ITEM_STACK, toReadd);
+            logThrottled("PreventHidePlugin: re-added {} stacks from removal listener", toReadd.size());
+            refreshIngredientVisibility(mgr, toReadd);
+            if (!runtimeFromOwnReload) {
+                // EMI indexes JEI ingredients at reload time, so it has to pick these up
+                reloadRequested = true;
+                ClientInit.triggerEmiRefresh();
             }
-        }, "PreventHidePlugin-ReaddLoop");
-        t.setDaemon(true);
-        t.start();
+        } catch (Throwable t) {
+            EmiGameStagesLink.LOGGER.debug("PreventHidePlugin readd in listener failed: {}", t.getMessage());
+        }
     }
 
     private void readdAllIfEnabled() {
@@ -134,31 +184,28 @@ public class PreventHidePlugin implements IModPlugin {
         try {
             IIngredientManager ingredients = this.runtime.getIngredientManager();
 
-            // Gather existing JEI item registry ids to avoid duplicates
-            Set<String> present = new HashSet<>();
+            // Gather the items JEI already has, by identity
+            Set<Item> present = Collections.newSetFromMap(new IdentityHashMap<>());
             Collection<ItemStack> current = ingredients.getAllIngredients(VanillaTypes.ITEM_STACK);
             for (ItemStack s : current) {
                 if (s == null || s.isEmpty()) continue;
-                ResourceLocation id = ForgeRegistries.ITEMS.getKey(s.getItem());
-                if (id != null) present.add(id.toString());
+                present.add(s.getItem());
             }
 
             // Build list of items that are not present in JEI and add them
             List<ItemStack> toAdd = new ArrayList<>();
             for (Item item : ForgeRegistries.ITEMS) {
-                if (item == null) continue;
-                ResourceLocation id = ForgeRegistries.ITEMS.getKey(item);
-                if (id == null) continue;
-                if (!present.contains(id.toString())) {
-                    ItemStack s = new ItemStack(item);
-                    if (!s.isEmpty()) toAdd.add(s);
-                }
+                if (item == null || present.contains(item)) continue;
+                ItemStack s = new ItemStack(item);
+                if (!s.isEmpty()) toAdd.add(s);
             }
 
             if (!toAdd.isEmpty()) {
                 ingredients.addIngredientsAtRuntime(VanillaTypes.ITEM_STACK, toAdd);
                 EmiGameStagesLink.LOGGER.debug("PreventHidePlugin restored {} item stacks into JEI", toAdd.size());
-                // Force JEI visibility refresh for the stacks we just added
+                // Force JEI visibility refresh for the stacks we just added. No EMI reload: the diff
+                // always finds items JEI leaves out by design (e.g. in no creative tab), and runs
+                // on every runtime start, so a reload here would cost one on every start
                 refreshIngredientVisibility(ingredients, toAdd);
             }
         } catch (Throwable t) {
@@ -166,44 +213,111 @@ public class PreventHidePlugin implements IModPlugin {
         }
     }
 
-    @SuppressWarnings({"rawtypes","unchecked"})
+    /**
+     * Queue JEI visibility notifications for re-added stacks. They are sent from the
+     * client tick under {@link #VISIBILITY_BUDGET_NANOS} per tick rather than all at once.
+     */
     private void refreshIngredientVisibility(IIngredientManager ingredients, List<ItemStack> items) {
         if (this.runtime == null) return;
-        try {
-            IJeiHelpers helpers = this.runtime.getJeiHelpers();
-            Object visibility = helpers.getIngredientVisibility();
-            if (visibility == null) return;
+        pendingVisibility.addAll(items);
+        ClientTaskScheduler.schedule(VISIBILITY_TASK, 1, () -> drainVisibility(ingredients));
+    }
 
-            Method notify = null;
-            try {
-                notify = visibility.getClass().getMethod("notifyListeners", mezz.jei.api.ingredients.ITypedIngredient.class, boolean.class);
-            } catch (NoSuchMethodException e) {
-                // Older JEI might use different signature - try to find compatible method
-                for (Method m : visibility.getClass().getMethods()) {
-                    if (m.getName().equals("notifyListeners") && m.getParameterCount() == 2) {
-                        notify = m;
-                        break;
-                    }
-                }
+    @SuppressWarnings({"rawtypes","unchecked"})
+    private void drainVisibility(IIngredientManager ingredients) {
+        if (this.runtime == null) {
+            pendingVisibility.clear();
+            return;
+        }
+        try {
+            Object visibility = this.runtime.getJeiHelpers().getIngredientVisibility();
+            MethodHandle notify = visibility == null ? null : resolveNotifyListeners(visibility.getClass());
+            if (notify == null) {
+                pendingVisibility.clear();
+                return;
             }
 
-            if (notify == null) return;
-
-            for (ItemStack s : items) {
+            long deadline = System.nanoTime() + VISIBILITY_BUDGET_NANOS;
+            int sent = 0;
+            while (!pendingVisibility.isEmpty()) {
+                ItemStack s = pendingVisibility.poll();
                 try {
                     Optional typed = ingredients.createTypedIngredient(VanillaTypes.ITEM_STACK, s);
                     if (typed.isPresent()) {
-                        Object t = typed.get();
-                        // invoke notifyListeners(typedIngredient, true)
-                        notify.invoke(visibility, t, true);
+                        // notifyListeners(typedIngredient, true)
+                        notify.invoke(visibility, typed.get(), true);
                     }
                 } catch (Throwable t) {
                     // ignore individual failures
                 }
+                // Check the clock every few stacks, System.nanoTime is not free either
+                if ((++sent & 15) == 0 && System.nanoTime() > deadline) {
+                    break;
+                }
+            }
+            visibilityNotified += sent;
+
+            if (!pendingVisibility.isEmpty()) {
+                // Out of budget, continue next tick
+                ClientTaskScheduler.schedule(VISIBILITY_TASK, 1, () -> drainVisibility(ingredients));
+            } else {
+                logThrottled("PreventHidePlugin: requested JEI visibility refresh for {} items", visibilityNotified);
+                visibilityNotified = 0;
             }
-            EmiGameStagesLink.LOGGER.info("PreventHidePlugin: requested JEI visibility refresh for {} items", items.size());
         } catch (Throwable t) {
+            pendingVisibility.clear();
             EmiGameStagesLink.LOGGER.debug("PreventHidePlugin: visibility refresh failed: {}", t.getMessage());
         }
     }
+
+    /**
+     * Resolve notifyListeners(ITypedIngredient, boolean) on the visibility implementation once
+     * per class. Older JEI versions may use a different parameter type, so fall back to any
+     * two-argument overload.
+     */
+    @Nullable
+    private static MethodHandle resolveNotifyListeners(Class<?> visibilityClass) {
+        if (visibilityClass == notifyHandleOwner) {
+            return notifyHandle;
+        }
+
+        MethodHandle handle = null;
+        try {
+            Method method = null;
+            try {
+                method = visibilityClass.getMethod("notifyListeners", ITypedIngredient.class, boolean.class);
+            } catch (NoSuchMethodException e) {
+                for (Method m : visibilityClass.getMethods()) {
+                    if (m.getName().equals("notifyListeners") && m.getParameterCount() == 2) {
+                        method = m;
+                        break;
+                    }
+                }
+            }
+            if (method != null) {
+                handle = MethodHandles.publicLookup().unreflect(method)
+                        .asType(MethodType.methodType(void.class, Object.class, Object.class, boolean.class));
+            }
+        } catch (Throwable t) {
+            EmiGameStagesLink.LOGGER.debug("PreventHidePlugin: unable to resolve notifyListeners: {}", t.getMessage());
+        }
+
+        // Cached even when missing, so the lookup is not repeated for every batch
+        notifyHandle = handle;
+        notifyHandleOwner = visibilityClass;
+        return handle;
+    }
+
+    /**
+     * Log at INFO at most once per {@link #LOG_INTERVAL_MS}, otherwise at DEBUG
+     */
+    private static void logThrottled(String message, Object... args) {
+        long now = System.currentTimeMillis();
+        if (now - lastInfoLog >= LOG_INTERVAL_MS) {
+            lastInfoLog = now;
+            EmiGameStagesLink.LOGGER.info(message, args);
+        } else {
+            EmiGameStagesLink.LOGGER.debug(message, args);
+        }
+    }
 }
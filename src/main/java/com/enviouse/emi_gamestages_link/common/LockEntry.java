@@ -9,15 +9,34 @@ import java.util.Objects;
 /**
  * Represents a single lock entry - an item or recipe locked to a stage.
  * This is a data transfer object used for network sync.
+ * <p>
+ * {@code stageId} is the required stage's id in the stage dictionary of the
+ * {@link LockIndex} holding the entry, or {@link #NO_STAGE_ID} before the entry
+ * has been added to an index.
  */
 public record LockEntry(
         ResourceLocation targetId,
         EntryType entryType,
         String requiredStage,
         LockType source,
-        @Nullable String reason
+        @Nullable String reason,
+        int stageId
 ) {
 
+    public static final int NO_STAGE_ID = -1;
+
+    public LockEntry(ResourceLocation targetId, EntryType entryType, String requiredStage,
+                     LockType source, @Nullable String reason) {
+        this(targetId, entryType, requiredStage, source, reason, NO_STAGE_ID);
+    }
+
+    /**
+     * @return this entry bound to the given stage dictionary id
+     */
+    public LockEntry withStageId(int id) {
+        return id == stageId ? this : new LockEntry(targetId, entryType, requiredStage, source, reason, id);
+    }
+
     /**
      * Type of entry (item or recipe)
      */
@@ -27,7 +46,8 @@ public record LockEntry(
     }
 
     /**
-     * Write this entry to a network buffer
+     * Write this entry to a network buffer. The stage id is not written,
+     * it is reassigned by the receiving index.
      */
     public void toNetwork(FriendlyByteBuf buf) {
         buf.writeResourceLocation(targetId);
@@ -0,0 +1,501 @@
+package com.enviouse.emi_gamestages_link.common;
+
+import com.google.common.hash.Hashing;
+import io.netty.buffer.Unpooled;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.item.Item;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Immutable table of every item and recipe lock known to the server.
+ * None of this depends on a particular player, so one index is built per
+ * datapack/config reload and shared by every player's {@link LockSnapshot}.
+ * <p>
+ * Required stages are interned into a stage dictionary: ids are assigned in
+ * sorted name order, so the server and any client decoding the same table
+ * agree on them, and every entry carries its stage id.
+ */
+public final class LockIndex {
+
+    public static final LockIndex EMPTY = new LockIndex(Map.of(), Map.of(), new String[0], Map.of());
+
+    // Wire formats, written as the first byte of the encoded table
+    private static final int FORMAT_LEGACY = 1;
+    private static final int FORMAT_COMPACT = 2;
+
+    private static final LockType[] LOCK_TYPES = LockType.values();
+
+    private final Map<ResourceLocation, LockEntry> itemLocks;
+    private final Map<ResourceLocation, LockEntry> recipeLocks;
+    private final String[] stageNames;
+    private final Map<String, Integer> stageIds;
+
+    // Lazily encoded wire form of the table, shared by every player's snapshot
+    private volatile byte[] encodedTable;
+    private volatile byte[] compressedTable;
+    private volatile long contentHash;
+
+    // Item locks indexed by numeric item registry id, built on first use
+    private volatile LockEntry[] itemLocksById;
+
+    private LockIndex(Map<ResourceLocation, LockEntry> itemLocks,
+                      Map<ResourceLocation, LockEntry> recipeLocks,
+                      String[] stageNames, Map<String, Integer> stageIds) {
+        this.itemLocks = Collections.unmodifiableMap(itemLocks);
+        this.recipeLocks = Collections.unmodifiableMap(recipeLocks);
+        this.stageNames = stageNames;
+        this.stageIds = stageIds;
+    }
+
+    @Nullable
+    public LockEntry getItemLock(ResourceLocation itemId) {
+        return itemLocks.get(itemId);
+    }
+
+    /**
+     * Look up an item lock by registry id, with a single array load and no hashing
+     */
+    @Nullable
+    public LockEntry getItemLock(Item item) {
+        LockEntry[] byId = getItemLocksById();
+        int id = BuiltInRegistries.ITEM.getId(item);
+        return id >= 0 && id < byId.length ? byId[id] : null;
+    }
+
+    /**
+     * @return item locks as a dense array indexed by numeric item registry id, built on first use.
+     * Registry ids are only valid for the current session, so this is not part of the wire form.
+     */
+    public LockEntry[] getItemLocksById() {
+        LockEntry[] byId = itemLocksById;
+        if (byId == null) {
+            synchronized (this) {
+                byId = itemLocksById;
+                if (byId == null) {
+                    byId = new LockEntry[BuiltInRegistries.ITEM.size()];
+                    for (LockEntry entry : itemLocks.values()) {
+                        int id = BuiltInRegistries.ITEM.getOptional(entry.targetId())
+                                .map(BuiltInRegistries.ITEM::getId)
+                                .orElse(-1);
+                        if (id >= 0 && id < byId.length) {
+                            byId[id] = entry;
+                        }
+                    }
+                    itemLocksById = byId;
+                }
+            }
+        }
+        return byId;
+    }
+
+    @Nullable
+    public LockEntry getRecipeLock(ResourceLocation recipeId) {
+        return recipeLocks.get(recipeId);
+    }
+
+    public Map<ResourceLocation, LockEntry> getItemLocks() {
+        return itemLocks;
+    }
+
+    public Map<ResourceLocation, LockEntry> getRecipeLocks() {
+        return recipeLocks;
+    }
+
+    public int size() {
+        return itemLocks.size() + recipeLocks.size();
+    }
+
+    /**
+     * @return the dictionary id of a stage, or {@link LockEntry#NO_STAGE_ID} if no lock requires it
+     */
+    public int getStageId(String stage) {
+        Integer id = stageIds.get(stage);
+        return id == null ? LockEntry.NO_STAGE_ID : id;
+    }
+
+    public String getStageName(int stageId) {
+        return stageNames[stageId];
+    }
+
+    /**
+     * @return number of distinct stages required by this table
+     */
+    public int getStageCount() {
+        return stageNames.length;
+    }
+
+    /**
+     * Map stage names onto this table's stage dictionary. Stages no lock requires are skipped.
+     */
+    public BitSet toStageBits(Collection<String> stages) {
+        BitSet bits = new BitSet(stageNames.length);
+        for (String stage : stages) {
+            Integer id = stageIds.get(stage);
+            if (id != null) {
+                bits.set(id);
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Write the lock table to a network buffer.
+     * The table is encoded once and the bytes are reused for every recipient.
+     */
+    public void toNetwork(FriendlyByteBuf buf) {
+        buf.writeBytes(getEncodedTable());
+    }
+
+    /**
+     * Read a lock table from a network buffer, in either wire format
+     */
+    public static LockIndex fromNetwork(FriendlyByteBuf buf) {
+        int format = buf.readByte();
+        return switch (format) {
+            case FORMAT_LEGACY -> readLegacy(buf);
+            case FORMAT_COMPACT -> readCompact(buf);
+            default -> throw new IllegalArgumentException("Unknown lock table format " + format);
+        };
+    }
+
+    /**
+     * @return the encoded lock table, encoding it on first use
+     */
+    public byte[] getEncodedTable() {
+        byte[] encoded = encodedTable;
+        if (encoded == null) {
+            synchronized (this) {
+                encoded = encodedTable;
+                if (encoded == null) {
+                    encoded = encodeTable(ModConfiguration.compactSyncFormat);
+                    encodedTable = encoded;
+                }
+            }
+        }
+        return encoded;
+    }
+
+    /**
+     * Hash of the encoded table, used by clients to prove they already hold this table.
+     * Never 0, which is reserved for "no table".
+     */
+    public long getContentHash() {
+        long hash = contentHash;
+        if (hash == 0) {
+            hash = Hashing.murmur3_128().hashBytes(getEncodedTable()).asLong();
+            if (hash == 0) {
+                hash = 1;
+            }
+            contentHash = hash;
+        }
+        return hash;
+    }
+
+    /**
+     * @return the encoded lock table deflate-compressed, compressing it on first use
+     */
+    public byte[] getCompressedTable() {
+        byte[] compressed = compressedTable;
+        if (compressed == null) {
+            synchronized (this) {
+                compressed = compressedTable;
+                if (compressed == null) {
+                    compressed = compress(getEncodedTable());
+                    compressedTable = compressed;
+                }
+            }
+        }
+        return compressed;
+    }
+
+    /**
+     * Inflate and read a lock table produced by {@link #getCompressedTable()}.
+     *
+     * @param expectedLength The size of the encoded table before compression
+     */
+    public static LockIndex fromCompressed(byte[] compressed, int expectedLength) throws DataFormatException {
+        byte[] encoded = new byte[expectedLength];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            int read = 0;
+            while (read < expectedLength && !inflater.finished()) {
+                int n = inflater.inflate(encoded, read, expectedLength - read);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                read += n;
+            }
+            if (read != expectedLength || !inflater.finished()) {
+                throw new DataFormatException("Lock table inflated to " + read + " bytes, expected " + expectedLength);
+            }
+        } finally {
+            inflater.end();
+        }
+
+        FriendlyByteBuf buf = new FriendlyByteBuf(Unpooled.wrappedBuffer(encoded));
+        try {
+            return fromNetwork(buf);
+        } finally {
+            buf.release();
+        }
+    }
+
+    private static byte[] compress(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(chunk);
+                out.write(chunk, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private byte[] encodeTable(boolean compact) {
+        FriendlyByteBuf buf = new FriendlyByteBuf(Unpooled.buffer());
+        try {
+            if (compact) {
+                buf.writeByte(FORMAT_COMPACT);
+                writeCompact(buf);
+            } else {
+                buf.writeByte(FORMAT_LEGACY);
+                writeLegacy(buf);
+            }
+
+            byte[] bytes = new byte[buf.readableBytes()];
+            buf.readBytes(bytes);
+            return bytes;
+        } finally {
+            buf.release();
+        }
+    }
+
+    /**
+     * Legacy format: every entry carries its full id, stage and reason strings.
+     */
+    private void writeLegacy(FriendlyByteBuf buf) {
+        // Write item locks
+        buf.writeVarInt(itemLocks.size());
+        for (LockEntry entry : sortedEntries(itemLocks)) {
+            entry.toNetwork(buf);
+        }
+
+        // Write recipe locks
+        buf.writeVarInt(recipeLocks.size());
+        for (LockEntry entry : sortedEntries(recipeLocks)) {
+            entry.toNetwork(buf);
+        }
+    }
+
+    private static LockIndex readLegacy(FriendlyByteBuf buf) {
+        Builder builder = builder();
+
+        // Read item locks
+        int itemCount = buf.readVarInt();
+        for (int i = 0; i < itemCount; i++) {
+            builder.addItemLock(LockEntry.fromNetwork(buf));
+        }
+
+        // Read recipe locks
+        int recipeCount = buf.readVarInt();
+        for (int i = 0; i < recipeCount; i++) {
+            builder.addRecipeLock(LockEntry.fromNetwork(buf));
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Compact format: namespaces, stages and reasons are written once into string
+     * tables and entries refer to them by varint index. Only id paths are inline.
+     * The stage table is the index's stage dictionary, so indices are stage ids.
+     */
+    private void writeCompact(FriendlyByteBuf buf) {
+        List<LockEntry> sortedItems = sortedEntries(itemLocks);
+        List<LockEntry> sortedRecipes = sortedEntries(recipeLocks);
+        StringTable namespaces = new StringTable();
+        StringTable reasons = new StringTable();
+        for (List<LockEntry> locks : List.of(sortedItems, sortedRecipes)) {
+            for (LockEntry entry : locks) {
+                namespaces.indexOf(entry.targetId().getNamespace());
+                if (entry.reason() != null) {
+                    reasons.indexOf(entry.reason());
+                }
+            }
+        }
+
+        namespaces.toNetwork(buf);
+        buf.writeVarInt(stageNames.length);
+        for (String stage : stageNames) {
+            buf.writeUtf(stage);
+        }
+        reasons.toNetwork(buf);
+
+        writeCompactEntries(buf, sortedItems, namespaces, reasons);
+        writeCompactEntries(buf, sortedRecipes, namespaces, reasons);
+    }
+
+    private static void writeCompactEntries(FriendlyByteBuf buf, List<LockEntry> locks,
+                                            StringTable namespaces, StringTable reasons) {
+        buf.writeVarInt(locks.size());
+        for (LockEntry entry : locks) {
+            buf.writeVarInt(namespaces.indexOf(entry.targetId().getNamespace()));
+            buf.writeUtf(entry.targetId().getPath());
+            buf.writeVarInt(entry.stageId());
+            buf.writeVarInt(entry.source().ordinal());
+            // 0 = no reason, otherwise reason table index + 1
+            buf.writeVarInt(entry.reason() == null ? 0 : reasons.indexOf(entry.reason()) + 1);
+        }
+    }
+
+    /**
+     * Entries ordered by target id, so equal tables always encode (and hash) identically
+     */
+    private static List<LockEntry> sortedEntries(Map<ResourceLocation, LockEntry> locks) {
+        List<LockEntry> sorted = new ArrayList<>(locks.values());
+        sorted.sort(Comparator.comparing(LockEntry::targetId));
+        return sorted;
+    }
+
+    private static LockIndex readCompact(FriendlyByteBuf buf) {
+        String[] namespaces = StringTable.fromNetwork(buf);
+        String[] stages = StringTable.fromNetwork(buf);
+        String[] reasons = StringTable.fromNetwork(buf);
+
+        Builder builder = builder();
+
+        int itemCount = buf.readVarInt();
+        for (int i = 0; i < itemCount; i++) {
+            builder.addItemLock(readCompactEntry(buf, LockEntry.EntryType.ITEM, namespaces, stages, reasons));
+        }
+
+        int recipeCount = buf.readVarInt();
+        for (int i = 0; i < recipeCount; i++) {
+            builder.addRecipeLock(readCompactEntry(buf, LockEntry.EntryType.RECIPE, namespaces, stages, reasons));
+        }
+
+        return builder.build();
+    }
+
+    private static LockEntry readCompactEntry(FriendlyByteBuf buf, LockEntry.EntryType type,
+                                              String[] namespaces, String[] stages, String[] reasons) {
+        String namespace = namespaces[buf.readVarInt()];
+        String path = buf.readUtf();
+        String stage = stages[buf.readVarInt()];
+        LockType source = LOCK_TYPES[buf.readVarInt()];
+        int reasonIndex = buf.readVarInt();
+        String reason = reasonIndex == 0 ? null : reasons[reasonIndex - 1];
+        return new LockEntry(ResourceLocation.fromNamespaceAndPath(namespace, path), type, stage, source, reason);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Mutable collector used while scanning lock sources.
+     * Later entries for the same target replace earlier ones.
+     * Stage ids are assigned when the index is built.
+     */
+    public static final class Builder {
+
+        private final Map<ResourceLocation, LockEntry> itemLocks = new HashMap<>();
+        private final Map<ResourceLocation, LockEntry> recipeLocks = new HashMap<>();
+
+        private Builder() {
+        }
+
+        public Builder addItemLock(LockEntry entry) {
+            itemLocks.put(entry.targetId(), entry);
+            return this;
+        }
+
+        public Builder addRecipeLock(LockEntry entry) {
+            recipeLocks.put(entry.targetId(), entry);
+            return this;
+        }
+
+        public LockIndex build() {
+            TreeSet<String> sorted = new TreeSet<>();
+            for (LockEntry entry : itemLocks.values()) {
+                sorted.add(entry.requiredStage());
+            }
+            for (LockEntry entry : recipeLocks.values()) {
+                sorted.add(entry.requiredStage());
+            }
+
+            String[] stageNames = sorted.toArray(new String[0]);
+            Map<String, Integer> stageIds = new HashMap<>(stageNames.length * 2);
+            for (int i = 0; i < stageNames.length; i++) {
+                stageIds.put(stageNames[i], i);
+            }
+
+            return new LockIndex(bindStageIds(itemLocks, stageIds), bindStageIds(recipeLocks, stageIds),
+                    stageNames, Collections.unmodifiableMap(stageIds));
+        }
+
+        private static Map<ResourceLocation, LockEntry> bindStageIds(Map<ResourceLocation, LockEntry> locks,
+                                                                     Map<String, Integer> stageIds) {
+            Map<ResourceLocation, LockEntry> bound = new HashMap<>(locks.size() * 2);
+            for (Map.Entry<ResourceLocation, LockEntry> e : locks.entrySet()) {
+                LockEntry entry = e.getValue();
+                bound.put(e.getKey(), entry.withStageId(stageIds.get(entry.requiredStage())));
+            }
+            return bound;
+        }
+    }
+
+    /**
+     * Insertion-ordered string dictionary for the compact wire format.
+     */
+    private static final class StringTable {
+
+        private final Map<String, Integer> indices = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        int indexOf(String value) {
+            return indices.computeIfAbsent(value, v -> {
+                values.add(v);
+                return values.size() - 1;
+            });
+        }
+
+        void toNetwork(FriendlyByteBuf buf) {
+            buf.writeVarInt(values.size());
+            for (String value : values) {
+                buf.writeUtf(value);
+            }
+        }
+
+        static String[] fromNetwork(FriendlyByteBuf buf) {
+            String[] values = new String[buf.readVarInt()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = buf.readUtf();
+            }
+            return values;
+        }
+    }
+}
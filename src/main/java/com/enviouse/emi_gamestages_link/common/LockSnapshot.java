@@ -2,124 +2,105 @@ package com.enviouse.emi_gamestages_link.common;
 
 import net.minecraft.network.FriendlyByteBuf;
 import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.item.Item;
 
 import javax.annotation.Nullable;
 import java.util.*;
 
 /**
  * A snapshot of all lock data for a player.
+ * The lock table itself is a shared {@link LockIndex}; only the unlocked
+ * stage set belongs to the player. The stage set is also held as a bit set
+ * over the index's stage dictionary, so lock checks are a single bit test.
  * Used for full synchronization from server to client.
  */
 public class LockSnapshot {
 
-    private final Map<ResourceLocation, LockEntry> itemLocks;
-    private final Map<ResourceLocation, LockEntry> recipeLocks;
+    private final LockIndex index;
     private final Set<String> unlockedStages;
+    private final BitSet unlockedStageBits;
 
     public LockSnapshot() {
-        this.itemLocks = new HashMap<>();
-        this.recipeLocks = new HashMap<>();
-        this.unlockedStages = new HashSet<>();
+        this(LockIndex.EMPTY, Set.of());
     }
 
-    public LockSnapshot(Map<ResourceLocation, LockEntry> itemLocks,
-                        Map<ResourceLocation, LockEntry> recipeLocks,
-                        Set<String> unlockedStages) {
-        this.itemLocks = new HashMap<>(itemLocks);
-        this.recipeLocks = new HashMap<>(recipeLocks);
+    public LockSnapshot(LockIndex index, Collection<String> unlockedStages) {
+        this.index = index;
         this.unlockedStages = new HashSet<>(unlockedStages);
+        this.unlockedStageBits = index.toStageBits(this.unlockedStages);
     }
 
-    public void addItemLock(LockEntry entry) {
-        itemLocks.put(entry.targetId(), entry);
+    public LockIndex getIndex() {
+        return index;
     }
 
-    public void addRecipeLock(LockEntry entry) {
-        recipeLocks.put(entry.targetId(), entry);
-    }
-
-    public void addUnlockedStage(String stage) {
-        unlockedStages.add(stage);
-    }
-
-    public void setUnlockedStages(Collection<String> stages) {
-        unlockedStages.clear();
-        unlockedStages.addAll(stages);
+    @Nullable
+    public LockEntry getItemLock(ResourceLocation itemId) {
+        return index.getItemLock(itemId);
     }
 
     @Nullable
-    public LockEntry getItemLock(ResourceLocation itemId) {
-        return itemLocks.get(itemId);
+    public LockEntry getItemLock(Item item) {
+        return index.getItemLock(item);
     }
 
     @Nullable
     public LockEntry getRecipeLock(ResourceLocation recipeId) {
-        return recipeLocks.get(recipeId);
+        return index.getRecipeLock(recipeId);
     }
 
     public boolean hasStage(String stage) {
         return unlockedStages.contains(stage);
     }
 
+    /**
+     * @param stageId A stage id from this snapshot's index
+     */
+    public boolean isStageUnlocked(int stageId) {
+        return unlockedStageBits.get(stageId);
+    }
+
     public Set<String> getUnlockedStages() {
         return Collections.unmodifiableSet(unlockedStages);
     }
 
     public Map<ResourceLocation, LockEntry> getItemLocks() {
-        return Collections.unmodifiableMap(itemLocks);
+        return index.getItemLocks();
     }
 
     public Map<ResourceLocation, LockEntry> getRecipeLocks() {
-        return Collections.unmodifiableMap(recipeLocks);
+        return index.getRecipeLocks();
     }
 
     /**
      * Check if an item is locked (requires a stage the player doesn't have)
      */
     public boolean isItemLocked(ResourceLocation itemId) {
-        LockEntry entry = itemLocks.get(itemId);
+        LockEntry entry = index.getItemLock(itemId);
         if (entry == null) {
             return false;
         }
-        return !unlockedStages.contains(entry.requiredStage());
+        return !unlockedStageBits.get(entry.stageId());
     }
 
     /**
      * Check if a recipe is locked (requires a stage the player doesn't have)
      */
     public boolean isRecipeLocked(ResourceLocation recipeId) {
-        LockEntry entry = recipeLocks.get(recipeId);
+        LockEntry entry = index.getRecipeLock(recipeId);
         if (entry == null) {
             return false;
         }
-        return !unlockedStages.contains(entry.requiredStage());
+        return !unlockedStageBits.get(entry.stageId());
     }
 
     /**
-     * Merge another snapshot into this one (for delta updates)
-     */
-    public void merge(LockSnapshot other) {
-        this.itemLocks.putAll(other.itemLocks);
-        this.recipeLocks.putAll(other.recipeLocks);
-        this.unlockedStages.clear();
-        this.unlockedStages.addAll(other.unlockedStages);
-    }
-
-    /**
-     * Write this snapshot to a network buffer
+     * Write this snapshot to a network buffer.
+     * The shared lock table is written from its cached encoding; only the
+     * stage section is encoded per player.
      */
     public void toNetwork(FriendlyByteBuf buf) {
-        // Write item locks
-        buf.writeVarInt(itemLocks.size());
-        for (LockEntry entry : itemLocks.values()) {
-            entry.toNetwork(buf);
-        }
-
-        // Write recipe locks
-        buf.writeVarInt(recipeLocks.size());
-        for (LockEntry entry : recipeLocks.values()) {
-            entry.toNetwork(buf);
-        }
+        index.toNetwork(buf);
 
         // Write unlocked stages
         buf.writeVarInt(unlockedStages.size());
@@ -132,32 +113,19 @@ public class LockSnapshot {
      * Read a snapshot from a network buffer
      */
     public static LockSnapshot fromNetwork(FriendlyByteBuf buf) {
-        LockSnapshot snapshot = new LockSnapshot();
-
-        // Read item locks
-        int itemCount = buf.readVarInt();
-        for (int i = 0; i < itemCount; i++) {
-            LockEntry entry = LockEntry.fromNetwork(buf);
-            snapshot.itemLocks.put(entry.targetId(), entry);
-        }
-
-        // Read recipe locks
-        int recipeCount = buf.readVarInt();
-        for (int i = 0; i < recipeCount; i++) {
-            LockEntry entry = LockEntry.fromNetwork(buf);
-            snapshot.recipeLocks.put(entry.targetId(), entry);
-        }
+        LockIndex index = LockIndex.fromNetwork(buf);
 
         // Read unlocked stages
         int stageCount = buf.readVarInt();
+        List<String> stages = new ArrayList<>(stageCount);
         for (int i = 0; i < stageCount; i++) {
-            snapshot.unlockedStages.add(buf.readUtf());
+            stages.add(buf.readUtf());
         }
 
-        return snapshot;
+        return new LockSnapshot(index, stages);
     }
 
     public int getTotalLockCount() {
-        return itemLocks.size() + recipeLocks.size();
+        return index.size();
     }
 }
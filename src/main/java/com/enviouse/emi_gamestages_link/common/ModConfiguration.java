@@ -5,7 +5,7 @@ import net.minecraftforge.eventbus.api.SubscribeEvent;
 import net.minecraftforge.fml.common.Mod;
 import net.minecraftforge.fml.event.config.ModConfigEvent;
 
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -26,11 +26,21 @@ public class ModConfiguration {
     private static final ForgeConfigSpec.IntValue HIGHLIGHT_COLOR;
     private static final ForgeConfigSpec.BooleanValue SHOW_TOOLTIP_INFO;
     private static final ForgeConfigSpec.BooleanValue SHOW_LOCKED_RECIPES;
+    private static final ForgeConfigSpec.BooleanValue BATCH_LOCK_RENDERING;
 
     // Integration settings
     private static final ForgeConfigSpec.BooleanValue ENABLE_ITEMSTAGES_INTEGRATION;
     private static final ForgeConfigSpec.BooleanValue ENABLE_RECIPESTAGES_INTEGRATION;
 
+    // Network settings
+    private static final ForgeConfigSpec.BooleanValue COMPACT_SYNC_FORMAT;
+    private static final ForgeConfigSpec.BooleanValue CHUNKED_SYNC;
+    private static final ForgeConfigSpec.IntValue SYNC_CHUNK_SIZE;
+    private static final ForgeConfigSpec.IntValue SYNC_CHUNKS_PER_TICK;
+    private static final ForgeConfigSpec.BooleanValue PERSIST_LOCK_CACHE;
+    private static final ForgeConfigSpec.IntValue REQUEST_COOLDOWN_TICKS;
+    private static final ForgeConfigSpec.IntValue INITIAL_SYNC_TIMEOUT_TICKS;
+
     // Lock definitions
     private static final ForgeConfigSpec.ConfigValue<List<? extends String>> ITEM_LOCKS;
     private static final ForgeConfigSpec.ConfigValue<List<? extends String>> TAG_LOCKS;
@@ -68,9 +78,13 @@ public class ModConfiguration {
 
         // New flag: prevent JEI from hiding locked recipes/ingredients when true
         SHOW_LOCKED_RECIPES = BUILDER
-                .comment("If true, attempt to prevent JEI (and JEI-based plugins) from hiding locked recipes/ingredients; EMI will re-add missing ingredients on stage sync.")
+                .comment("If true, attempt to prevent JEI (and JEI-based plugins) from hiding locked recipes/ingredients; removed ingredients are re-added on the next tick.")
                 .define("showLockedRecipes", true);
 
+        BATCH_LOCK_RENDERING = BUILDER
+                .comment("Draw the lock icons and highlights of an EMI panel page in one batch. Disable to draw each icon separately, e.g. for compatibility with other render mods.")
+                .define("batchLockRendering", true);
+
         BUILDER.pop();
 
         BUILDER.comment("Integration Settings - Automatic detection from other mods").push("integration");
@@ -85,6 +99,38 @@ public class ModConfiguration {
 
         BUILDER.pop();
 
+        BUILDER.comment("Network Settings - How lock data is sent to clients").push("network");
+
+        COMPACT_SYNC_FORMAT = BUILDER
+                .comment("Send the lock table in the compact dictionary-coded format. Disable to fall back to the legacy per-entry string format.")
+                .define("compactSyncFormat", true);
+
+        CHUNKED_SYNC = BUILDER
+                .comment("Send full lock tables deflate-compressed and split into chunks spread over several ticks, instead of as one packet")
+                .define("chunkedSync", true);
+
+        SYNC_CHUNK_SIZE = BUILDER
+                .comment("Size in bytes of each compressed lock table chunk")
+                .defineInRange("syncChunkSize", 32768, 1024, 1000000);
+
+        SYNC_CHUNKS_PER_TICK = BUILDER
+                .comment("Maximum number of lock table chunks sent to each player per server tick")
+                .defineInRange("syncChunksPerTick", 4, 1, 64);
+
+        REQUEST_COOLDOWN_TICKS = BUILDER
+                .comment("Minimum number of ticks between two lock data requests served for the same player. Extra requests are collapsed into one.")
+                .defineInRange("requestCooldownTicks", 20, 0, 1200);
+
+        INITIAL_SYNC_TIMEOUT_TICKS = BUILDER
+                .comment("Ticks to wait for a joining client to request lock data before sending the full table anyway")
+                .defineInRange("initialSyncTimeoutTicks", 100, 20, 1200);
+
+        PERSIST_LOCK_CACHE = BUILDER
+                .comment("Client only: keep a copy of each server's lock table on disk so locks show immediately on the next join")
+                .define("persistLockCache", true);
+
+        BUILDER.pop();
+
         BUILDER.comment("Manual Item Locks - Format: 'item_id=stage_name' (e.g., 'minecraft:diamond_pickaxe=diamond_age')",
                         "These are checked AFTER automatic integrations, useful for custom locks").push("locks");
 
@@ -110,10 +156,18 @@ public class ModConfiguration {
     public static int highlightColor;
     public static boolean showTooltipInfo;
     public static boolean showLockedRecipes;
+    public static boolean batchLockRendering = true;
     public static boolean enableItemStagesIntegration;
     public static boolean enableRecipeStagesIntegration;
-    public static Map<String, String> itemLocks = new HashMap<>();
-    public static Map<String, String> tagLocks = new HashMap<>();
+    public static boolean compactSyncFormat = true;
+    public static boolean chunkedSync = true;
+    public static int syncChunkSize = 32768;
+    public static int syncChunksPerTick = 4;
+    public static int requestCooldownTicks = 20;
+    public static int initialSyncTimeoutTicks = 100;
+    public static boolean persistLockCache = true;
+    public static Map<String, String> itemLocks = new LinkedHashMap<>();
+    public static Map<String, String> tagLocks = new LinkedHashMap<>();
 
     private static boolean validateLockEntry(final Object obj) {
         if (!(obj instanceof String str)) return false;
@@ -130,8 +184,16 @@ public class ModConfiguration {
         highlightColor = HIGHLIGHT_COLOR.get();
         showTooltipInfo = SHOW_TOOLTIP_INFO.get();
         showLockedRecipes = SHOW_LOCKED_RECIPES.get();
+        batchLockRendering = BATCH_LOCK_RENDERING.get();
         enableItemStagesIntegration = ENABLE_ITEMSTAGES_INTEGRATION.get();
         enableRecipeStagesIntegration = ENABLE_RECIPESTAGES_INTEGRATION.get();
+        compactSyncFormat = COMPACT_SYNC_FORMAT.get();
+        chunkedSync = CHUNKED_SYNC.get();
+        syncChunkSize = SYNC_CHUNK_SIZE.get();
+        syncChunksPerTick = SYNC_CHUNKS_PER_TICK.get();
+        requestCooldownTicks = REQUEST_COOLDOWN_TICKS.get();
+        initialSyncTimeoutTicks = INITIAL_SYNC_TIMEOUT_TICKS.get();
+        persistLockCache = PERSIST_LOCK_CACHE.get();
 
         // Parse item locks
         itemLocks.clear();
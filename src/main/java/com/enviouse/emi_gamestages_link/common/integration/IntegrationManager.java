@@ -35,6 +35,9 @@ public class IntegrationManager {
             EmiGameStagesLink.LOGGER.info("RecipeStages detected - automatic recipe stage integration available");
         }
 
+        // Resolve reflective accessors once so scans run at direct-call speed
+        StageIntegrationBridge.initialize(itemStagesPresent);
+
         if (!itemStagesPresent && !recipeStagesPresent) {
             EmiGameStagesLink.LOGGER.info("No stage mods detected - using manual config only");
         }
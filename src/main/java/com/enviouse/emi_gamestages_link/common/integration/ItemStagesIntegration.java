@@ -1,48 +1,158 @@
 package com.enviouse.emi_gamestages_link.common.integration;
 
 import com.enviouse.emi_gamestages_link.common.EmiGameStagesLink;
-import net.darkhax.itemstages.Restriction;
-import net.darkhax.itemstages.RestrictionManager;
-import net.minecraft.world.entity.player.Player;
+import com.enviouse.emi_gamestages_link.common.LockEntry;
+import com.enviouse.emi_gamestages_link.common.LockIndex;
+import com.enviouse.emi_gamestages_link.common.LockType;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.item.Item;
 import net.minecraft.world.item.ItemStack;
+import net.minecraftforge.registries.ForgeRegistries;
 
-import java.util.Optional;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Predicate;
 
 /**
  * Integration with ItemStages mod.
- * Provides automatic detection of items locked by ItemStages restrictions.
+ * Evaluates every ItemStages restriction against the item registry once per
+ * reload so the resulting item -> stage table can be synced to clients.
  * This class is server-safe - no client imports.
  */
 public class ItemStagesIntegration {
 
     /**
-     * Gets the required stage for an item from ItemStages for a specific player.
+     * Items per fork/join leaf task
+     */
+    private static final int SCAN_THRESHOLD = 512;
+
+    /**
+     * Create one stack per registered item for {@link #addItemLocks} to test.
+     * Must be called on the server thread: constructing a stack fires Forge capability
+     * events, whose handlers in other mods are not expected to run concurrently.
+     */
+    public static List<ItemStack> createItemStacks() {
+        List<ItemStack> stacks = new ArrayList<>(ForgeRegistries.ITEMS.getValues().size());
+        for (Item item : ForgeRegistries.ITEMS.getValues()) {
+            ItemStack stack = new ItemStack(item);
+            if (!stack.isEmpty()) {
+                stacks.add(stack);
+            }
+        }
+        return stacks;
+    }
+
+    /**
+     * Adds an item lock for every registered item matched by an ItemStages restriction.
+     * The first matching restriction wins, mirroring ItemStages' own lookup order.
+     *
+     * Safe to call off the server thread; only the restriction predicates run here.
      *
-     * @param player The player to check restrictions for
-     * @param stack The ItemStack to check
-     * @return The required stage name, or empty if not locked
+     * @param builder The lock index being built
+     * @param allRestrictions ItemStages restrictions captured on the server thread
+     * @param itemStacks Stacks from {@link #createItemStacks()}, created on the server thread
      */
-    public static Optional<String> getRequiredStage(Player player, ItemStack stack) {
-        if (!IntegrationManager.isItemStagesLoaded() || stack.isEmpty() || player == null) {
-            return Optional.empty();
+    public static void addItemLocks(LockIndex.Builder builder, Collection<?> allRestrictions, List<ItemStack> itemStacks) {
+        if (!StageIntegrationBridge.isItemStagesAvailable()) {
+            return;
+        }
+
+        List<StagedPredicate> restrictions = collectRestrictions(allRestrictions);
+        if (restrictions.isEmpty()) {
+            return;
         }
-        try {
-            return getRequiredStageInternal(player, stack);
-        } catch (Exception e) {
-            EmiGameStagesLink.LOGGER.debug("Error checking ItemStages: {}", e.getMessage());
-            return Optional.empty();
+
+        ItemStack[] stacks = itemStacks.toArray(new ItemStack[0]);
+        String[] stages = new String[stacks.length];
+        ForkJoinPool.commonPool().invoke(new ScanTask(stacks, stages, restrictions, 0, stacks.length));
+
+        int added = 0;
+        for (int i = 0; i < stacks.length; i++) {
+            if (stages[i] == null) {
+                continue;
+            }
+            ResourceLocation itemId = ForgeRegistries.ITEMS.getKey(stacks[i].getItem());
+            if (itemId != null) {
+                builder.addItemLock(new LockEntry(
+                        itemId,
+                        LockEntry.EntryType.ITEM,
+                        stages[i],
+                        LockType.ITEM_STAGES,
+                        "ItemStages"
+                ));
+                added++;
+            }
         }
+
+        EmiGameStagesLink.LOGGER.debug("Resolved {} ItemStages restrictions to {} item locks", restrictions.size(), added);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<StagedPredicate> collectRestrictions(Collection<?> allRestrictions) {
+        List<StagedPredicate> result = new ArrayList<>();
+        for (Object restriction : allRestrictions) {
+            Set<String> stages = StageIntegrationBridge.getRestrictionStages(restriction);
+            if (stages.isEmpty()) {
+                continue;
+            }
+            Object predicate = StageIntegrationBridge.getRestrictionPredicate(restriction);
+            if (predicate instanceof Predicate<?> itemPredicate) {
+                result.add(new StagedPredicate(stages.iterator().next(), (Predicate<ItemStack>) itemPredicate));
+            } else if (predicate != null) {
+                EmiGameStagesLink.LOGGER.debug("Skipping ItemStages restriction with unsupported predicate type {}", predicate.getClass().getName());
+            }
+        }
+        return result;
     }
 
-    private static Optional<String> getRequiredStageInternal(Player player, ItemStack stack) {
-        Restriction restriction = RestrictionManager.INSTANCE.getRestriction(player, stack);
-        if (restriction != null) {
-            Set<String> stages = restriction.getStages();
-            if (!stages.isEmpty()) {
-                return Optional.of(stages.iterator().next());
+    private record StagedPredicate(String stage, Predicate<ItemStack> predicate) {}
+
+    /**
+     * Tests a slice of the pre-built stacks against every restriction.
+     * Each leaf writes only its own range of the result array.
+     */
+    private static class ScanTask extends RecursiveAction {
+
+        private final ItemStack[] stacks;
+        private final String[] stages;
+        private final List<StagedPredicate> restrictions;
+        private final int from;
+        private final int to;
+
+        ScanTask(ItemStack[] stacks, String[] stages, List<StagedPredicate> restrictions, int from, int to) {
+            this.stacks = stacks;
+            this.stages = stages;
+            this.restrictions = restrictions;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > SCAN_THRESHOLD) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new ScanTask(stacks, stages, restrictions, from, mid),
+                          new ScanTask(stacks, stages, restrictions, mid, to));
+                return;
+            }
+
+            for (int i = from; i < to; i++) {
+                ItemStack stack = stacks[i];
+                for (StagedPredicate restriction : restrictions) {
+                    try {
+                        if (restriction.predicate().test(stack)) {
+                            stages[i] = restriction.stage();
+                            break;
+                        }
+                    } catch (Exception e) {
+                        // Ignore individual predicate errors
+                    }
+                }
             }
         }
-        return Optional.empty();
     }
 }
@@ -31,29 +31,8 @@ public class RecipeStagesIntegration {
     }
 
     private static Optional<String> getRequiredStageInternal(Recipe<?> recipe) {
-        if (recipe.getClass().getName().contains("recipestages") ||
-            implementsIStagedRecipe(recipe)) {
-            try {
-                var method = recipe.getClass().getMethod("getStage");
-                Object result = method.invoke(recipe);
-                if (result instanceof String stage) {
-                    return Optional.of(stage);
-                }
-            } catch (Exception ignored) {
-            }
-        }
-        return Optional.empty();
+        return Optional.ofNullable(StageIntegrationBridge.getRecipeStage(recipe));
     }
 
-    private static boolean implementsIStagedRecipe(Recipe<?> recipe) {
-        for (Class<?> iface : recipe.getClass().getInterfaces()) {
-            if (iface.getSimpleName().equals("IStagedRecipe")) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-
     public record RecipeStageLockInfo(String stageName, boolean isLocked) {}
 }
@@ -0,0 +1,177 @@
+package com.enviouse.emi_gamestages_link.common.integration;
+
+import com.enviouse.emi_gamestages_link.common.EmiGameStagesLink;
+import net.minecraft.world.item.crafting.Recipe;
+
+import javax.annotation.Nullable;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Pre-resolved accessors for the ItemStages and RecipeStages internals we read
+ * reflectively. Class and method lookups happen once in
+ * {@link IntegrationManager#initialize()}; the scan loops then only perform
+ * exact {@link MethodHandle} calls.
+ * This class is server-safe - no client imports.
+ */
+public class StageIntegrationBridge {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    // ItemStages accessors, null when ItemStages is absent or incompatible
+    @Nullable private static MethodHandle getAllRestrictions;
+    @Nullable private static MethodHandle getRestrictionStages;
+    @Nullable private static MethodHandle getRestrictionPredicate;
+
+    /**
+     * Per recipe class "is staged" flag and stage getter, computed the first time a class is seen.
+     */
+    private static final ClassValue<RecipeStageAccessor> RECIPE_ACCESSORS = new ClassValue<>() {
+        @Override
+        protected RecipeStageAccessor computeValue(Class<?> type) {
+            return resolveRecipeAccessor(type);
+        }
+    };
+
+    /**
+     * Resolve the ItemStages accessors. Called once from {@link IntegrationManager#initialize()}.
+     */
+    static void initialize(boolean itemStagesPresent) {
+        if (itemStagesPresent) {
+            resolveItemStages();
+        }
+    }
+
+    private static void resolveItemStages() {
+        try {
+            Class<?> managerClass = Class.forName("net.darkhax.itemstages.RestrictionManager");
+            Class<?> restrictionClass = Class.forName("net.darkhax.itemstages.Restriction");
+            Object instance = managerClass.getField("INSTANCE").get(null);
+
+            getAllRestrictions = LOOKUP.unreflect(managerClass.getMethod("getAllRestrictions"))
+                    .bindTo(instance)
+                    .asType(MethodType.methodType(Collection.class));
+            getRestrictionStages = LOOKUP.unreflect(restrictionClass.getMethod("getStages"))
+                    .asType(MethodType.methodType(Set.class, Object.class));
+            getRestrictionPredicate = LOOKUP.unreflect(restrictionClass.getMethod("getItemPredicate"))
+                    .asType(MethodType.methodType(Object.class, Object.class));
+        } catch (Throwable t) {
+            getAllRestrictions = null;
+            getRestrictionStages = null;
+            getRestrictionPredicate = null;
+            EmiGameStagesLink.LOGGER.warn("ItemStages detected but its restriction API could not be resolved: {}", t.toString());
+        }
+    }
+
+    /**
+     * @return true if the ItemStages accessors were resolved
+     */
+    public static boolean isItemStagesAvailable() {
+        return getAllRestrictions != null;
+    }
+
+    /**
+     * @return every ItemStages restriction, or an empty list if unavailable
+     */
+    public static Collection<?> getAllRestrictions() {
+        if (getAllRestrictions == null) {
+            return List.of();
+        }
+        try {
+            Collection<?> restrictions = (Collection<?>) getAllRestrictions.invokeExact();
+            return restrictions == null ? List.of() : restrictions;
+        } catch (Throwable t) {
+            EmiGameStagesLink.LOGGER.debug("Error reading ItemStages restrictions: {}", t.getMessage());
+            return List.of();
+        }
+    }
+
+    /**
+     * @return the stages of an ItemStages restriction, or an empty set if unavailable
+     */
+    @SuppressWarnings("unchecked")
+    public static Set<String> getRestrictionStages(Object restriction) {
+        if (getRestrictionStages == null) {
+            return Set.of();
+        }
+        try {
+            Set<String> stages = (Set<String>) getRestrictionStages.invokeExact(restriction);
+            return stages == null ? Set.of() : stages;
+        } catch (Throwable t) {
+            EmiGameStagesLink.LOGGER.debug("Error reading ItemStages restriction stages: {}", t.getMessage());
+            return Set.of();
+        }
+    }
+
+    /**
+     * @return the item predicate of an ItemStages restriction, or null if unavailable
+     */
+    @Nullable
+    public static Object getRestrictionPredicate(Object restriction) {
+        if (getRestrictionPredicate == null) {
+            return null;
+        }
+        try {
+            return (Object) getRestrictionPredicate.invokeExact(restriction);
+        } catch (Throwable t) {
+            EmiGameStagesLink.LOGGER.debug("Error reading ItemStages restriction predicate: {}", t.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Gets the stage a RecipeStages recipe is locked behind.
+     *
+     * @param recipe The recipe to check
+     * @return The stage name, or null if the recipe is not staged
+     */
+    @Nullable
+    public static String getRecipeStage(Recipe<?> recipe) {
+        RecipeStageAccessor accessor = RECIPE_ACCESSORS.get(recipe.getClass());
+        if (!accessor.staged()) {
+            return null;
+        }
+        try {
+            return (String) accessor.getStage().invokeExact((Object) recipe);
+        } catch (Throwable t) {
+            return null;
+        }
+    }
+
+    private static RecipeStageAccessor resolveRecipeAccessor(Class<?> type) {
+        if (!type.getName().contains("recipestages") && !implementsStagedRecipe(type)) {
+            return RecipeStageAccessor.UNSTAGED;
+        }
+        try {
+            Method method = type.getMethod("getStage");
+            if (method.getReturnType() != String.class) {
+                return RecipeStageAccessor.UNSTAGED;
+            }
+            MethodHandle handle = LOOKUP.unreflect(method)
+                    .asType(MethodType.methodType(String.class, Object.class));
+            return new RecipeStageAccessor(true, handle);
+        } catch (Throwable t) {
+            return RecipeStageAccessor.UNSTAGED;
+        }
+    }
+
+    private static boolean implementsStagedRecipe(Class<?> type) {
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Class<?> iface : c.getInterfaces()) {
+                if (iface.getSimpleName().equals("IStagedRecipe")) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private record RecipeStageAccessor(boolean staged, @Nullable MethodHandle getStage) {
+        static final RecipeStageAccessor UNSTAGED = new RecipeStageAccessor(false, null);
+    }
+}
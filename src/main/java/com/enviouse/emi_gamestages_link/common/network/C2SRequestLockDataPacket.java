@@ -1,6 +1,6 @@
 package com.enviouse.emi_gamestages_link.common.network;
 
-import com.enviouse.emi_gamestages_link.server.LockDataManager;
+import com.enviouse.emi_gamestages_link.server.LockRequestLimiter;
 import net.minecraft.network.FriendlyByteBuf;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraftforge.network.NetworkEvent;
@@ -9,28 +9,37 @@ import java.util.function.Supplier;
 
 /**
  * Client to Server packet: Request lock data refresh.
- * Used when client wants to refresh EMI data (e.g., on EMI reload).
+ * Sent on join and when the client needs to resync. Carries the content hash
+ * of the client's cached lock table so the server can skip resending it.
+ * Requests are rate limited per player by {@link LockRequestLimiter}.
  */
 public class C2SRequestLockDataPacket {
 
-    public C2SRequestLockDataPacket() {
+    private final long knownHash;
+
+    public C2SRequestLockDataPacket(long knownHash) {
+        this.knownHash = knownHash;
     }
 
     public static void encode(C2SRequestLockDataPacket packet, FriendlyByteBuf buf) {
-        // No data to encode
+        buf.writeLong(packet.knownHash);
     }
 
     public static C2SRequestLockDataPacket decode(FriendlyByteBuf buf) {
-        return new C2SRequestLockDataPacket();
+        return new C2SRequestLockDataPacket(buf.readLong());
     }
 
     public static void handle(C2SRequestLockDataPacket packet, Supplier<NetworkEvent.Context> ctx) {
         ctx.get().enqueueWork(() -> {
             ServerPlayer player = ctx.get().getSender();
             if (player != null) {
-                LockDataManager.sendFullLockDataToPlayer(player);
+                LockRequestLimiter.onRequest(player, packet.knownHash);
             }
         });
         ctx.get().setPacketHandled(true);
     }
+
+    public long getKnownHash() {
+        return knownHash;
+    }
 }
@@ -9,13 +9,15 @@ import net.minecraftforge.network.NetworkRegistry;
 import net.minecraftforge.network.PacketDistributor;
 import net.minecraftforge.network.simple.SimpleChannel;
 
+import java.util.List;
+
 /**
  * Handles network packet registration and sending.
  * This class is safe to load on both client and server.
  */
 public class NetworkHandler {
 
-    private static final String PROTOCOL_VERSION = "1";
+    private static final String PROTOCOL_VERSION = "5";
 
     public static final SimpleChannel CHANNEL = NetworkRegistry.newSimpleChannel(
             ResourceLocation.fromNamespaceAndPath(EmiGameStagesLink.MODID, "main"),
@@ -51,27 +53,61 @@ public class NetworkHandler {
                 .consumerMainThread(C2SRequestLockDataPacket::handle)
                 .add();
 
+        // S2C: Compressed full lock data, split into chunks
+        CHANNEL.messageBuilder(S2CLockDataChunkPacket.class, packetId++, NetworkDirection.PLAY_TO_CLIENT)
+                .encoder(S2CLockDataChunkPacket::encode)
+                .decoder(S2CLockDataChunkPacket::decode)
+                .consumerMainThread(S2CLockDataChunkPacket::handle)
+                .add();
+
+        // S2C: Client's cached lock table is current, stages only
+        CHANNEL.messageBuilder(S2CLockDataUnchangedPacket.class, packetId++, NetworkDirection.PLAY_TO_CLIENT)
+                .encoder(S2CLockDataUnchangedPacket::encode)
+                .decoder(S2CLockDataUnchangedPacket::decode)
+                .consumerMainThread(S2CLockDataUnchangedPacket::handle)
+                .add();
+
         EmiGameStagesLink.LOGGER.info("Network packets registered");
     }
 
     /**
      * Send full lock data to a specific player
      */
-    public static void sendFullLockData(ServerPlayer player, LockSnapshot snapshot) {
-        CHANNEL.send(PacketDistributor.PLAYER.with(() -> player), new S2CLockDataFullPacket(snapshot));
+    public static void sendFullLockData(ServerPlayer player, LockSnapshot snapshot, int revision) {
+        CHANNEL.send(PacketDistributor.PLAYER.with(() -> player),
+                new S2CLockDataFullPacket(snapshot, revision, snapshot.getIndex().getContentHash()));
+    }
+
+    /**
+     * Tell a player their cached lock table is current, with their stages
+     */
+    public static void sendLockDataUnchanged(ServerPlayer player, long contentHash, int revision, List<String> stages) {
+        CHANNEL.send(PacketDistributor.PLAYER.with(() -> player),
+                new S2CLockDataUnchangedPacket(contentHash, revision, stages));
+    }
+
+    /**
+     * Send one chunk of a compressed full lock table to a specific player
+     */
+    public static void sendLockDataChunk(ServerPlayer player, S2CLockDataChunkPacket packet) {
+        CHANNEL.send(PacketDistributor.PLAYER.with(() -> player), packet);
     }
 
     /**
      * Send delta lock data (stages changed) to a specific player
      */
-    public static void sendDeltaLockData(ServerPlayer player, LockSnapshot snapshot) {
-        CHANNEL.send(PacketDistributor.PLAYER.with(() -> player), new S2CLockDataDeltaPacket(snapshot));
+    public static void sendDeltaLockData(ServerPlayer player, int baseRevision, int revision,
+                                         List<String> addedStages, List<String> removedStages) {
+        CHANNEL.send(PacketDistributor.PLAYER.with(() -> player),
+                new S2CLockDataDeltaPacket(baseRevision, revision, addedStages, removedStages));
     }
 
     /**
      * Request lock data from server (client-side call)
+     *
+     * @param knownHash Content hash of the client's cached lock table, or 0 if it has none
      */
-    public static void requestLockData() {
-        CHANNEL.sendToServer(new C2SRequestLockDataPacket());
+    public static void requestLockData(long knownHash) {
+        CHANNEL.sendToServer(new C2SRequestLockDataPacket(knownHash));
     }
 }
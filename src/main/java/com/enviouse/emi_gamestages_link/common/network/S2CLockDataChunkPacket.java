@@ -0,0 +1,143 @@
+package com.enviouse.emi_gamestages_link.common.network;
+
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.fml.DistExecutor;
+import net.minecraftforge.network.NetworkEvent;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Server to Client packet: One chunk of a deflate-compressed full lock table.
+ * Large tables are split into sequenced chunks sent over several ticks; the
+ * client reassembles them and decodes the table off the main thread.
+ * The final chunk also carries the player's unlocked stages, sync revision and
+ * the table's content hash.
+ */
+public class S2CLockDataChunkPacket {
+
+    private final int transferId;
+    private final int chunkIndex;
+    private final int chunkCount;
+    private final int compressedLength;
+    private final int uncompressedLength;
+    private final byte[] data;
+    private final int offset;
+    private final int length;
+
+    // Only present on the final chunk
+    private final int revision;
+    private final long contentHash;
+    private final List<String> stages;
+
+    public S2CLockDataChunkPacket(int transferId, int chunkIndex, int chunkCount,
+                                  int compressedLength, int uncompressedLength,
+                                  byte[] data, int offset, int length,
+                                  int revision, long contentHash, List<String> stages) {
+        this.transferId = transferId;
+        this.chunkIndex = chunkIndex;
+        this.chunkCount = chunkCount;
+        this.compressedLength = compressedLength;
+        this.uncompressedLength = uncompressedLength;
+        this.data = data;
+        this.offset = offset;
+        this.length = length;
+        this.revision = revision;
+        this.contentHash = contentHash;
+        this.stages = stages;
+    }
+
+    public static void encode(S2CLockDataChunkPacket packet, FriendlyByteBuf buf) {
+        buf.writeVarInt(packet.transferId);
+        buf.writeVarInt(packet.chunkIndex);
+        buf.writeVarInt(packet.chunkCount);
+        buf.writeVarInt(packet.compressedLength);
+        buf.writeVarInt(packet.uncompressedLength);
+        // Written in the same layout as writeByteArray, without copying the shared table
+        buf.writeVarInt(packet.length);
+        buf.writeBytes(packet.data, packet.offset, packet.length);
+        if (packet.isLast()) {
+            buf.writeVarInt(packet.revision);
+            buf.writeLong(packet.contentHash);
+            buf.writeCollection(packet.stages, FriendlyByteBuf::writeUtf);
+        }
+    }
+
+    public static S2CLockDataChunkPacket decode(FriendlyByteBuf buf) {
+        int transferId = buf.readVarInt();
+        int chunkIndex = buf.readVarInt();
+        int chunkCount = buf.readVarInt();
+        int compressedLength = buf.readVarInt();
+        int uncompressedLength = buf.readVarInt();
+        byte[] data = buf.readByteArray();
+        int revision = 0;
+        long contentHash = 0;
+        List<String> stages = List.of();
+        if (chunkIndex == chunkCount - 1) {
+            revision = buf.readVarInt();
+            contentHash = buf.readLong();
+            stages = buf.readList(FriendlyByteBuf::readUtf);
+        }
+        return new S2CLockDataChunkPacket(transferId, chunkIndex, chunkCount, compressedLength, uncompressedLength,
+                data, 0, data.length, revision, contentHash, stages);
+    }
+
+    public static void handle(S2CLockDataChunkPacket packet, Supplier<NetworkEvent.Context> ctx) {
+        ctx.get().enqueueWork(() -> {
+            // Handle on client - use DistExecutor to safely reference client code
+            DistExecutor.safeRunWhenOn(Dist.CLIENT, () -> () -> {
+                com.enviouse.emi_gamestages_link.client.ClientPacketHandler.handleLockDataChunk(packet);
+            });
+        });
+        ctx.get().setPacketHandled(true);
+    }
+
+    public boolean isLast() {
+        return chunkIndex == chunkCount - 1;
+    }
+
+    public int getTransferId() {
+        return transferId;
+    }
+
+    public int getChunkIndex() {
+        return chunkIndex;
+    }
+
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    public int getCompressedLength() {
+        return compressedLength;
+    }
+
+    public int getUncompressedLength() {
+        return uncompressedLength;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public int getRevision() {
+        return revision;
+    }
+
+    public long getContentHash() {
+        return contentHash;
+    }
+
+    public List<String> getStages() {
+        return stages;
+    }
+}
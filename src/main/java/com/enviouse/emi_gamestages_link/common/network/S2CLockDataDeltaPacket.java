@@ -1,44 +1,71 @@
 package com.enviouse.emi_gamestages_link.common.network;
 
-import com.enviouse.emi_gamestages_link.common.LockSnapshot;
 import net.minecraft.network.FriendlyByteBuf;
 import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.fml.DistExecutor;
 import net.minecraftforge.network.NetworkEvent;
 
+import java.util.List;
 import java.util.function.Supplier;
 
 /**
  * Server to Client packet: Delta lock data synchronization.
- * Sent when a player's stages change (add/remove/clear).
+ * Sent when a player's stages change (add/remove/clear). Carries only the stages
+ * added/removed since the revision the client last received; the lock table
+ * itself is not resent.
  */
 public class S2CLockDataDeltaPacket {
 
-    private final LockSnapshot snapshot;
+    private final int baseRevision;
+    private final int revision;
+    private final List<String> addedStages;
+    private final List<String> removedStages;
 
-    public S2CLockDataDeltaPacket(LockSnapshot snapshot) {
-        this.snapshot = snapshot;
+    public S2CLockDataDeltaPacket(int baseRevision, int revision, List<String> addedStages, List<String> removedStages) {
+        this.baseRevision = baseRevision;
+        this.revision = revision;
+        this.addedStages = addedStages;
+        this.removedStages = removedStages;
     }
 
     public static void encode(S2CLockDataDeltaPacket packet, FriendlyByteBuf buf) {
-        packet.snapshot.toNetwork(buf);
+        buf.writeVarInt(packet.baseRevision);
+        buf.writeVarInt(packet.revision);
+        buf.writeCollection(packet.addedStages, FriendlyByteBuf::writeUtf);
+        buf.writeCollection(packet.removedStages, FriendlyByteBuf::writeUtf);
     }
 
     public static S2CLockDataDeltaPacket decode(FriendlyByteBuf buf) {
-        return new S2CLockDataDeltaPacket(LockSnapshot.fromNetwork(buf));
+        int baseRevision = buf.readVarInt();
+        int revision = buf.readVarInt();
+        List<String> added = buf.readList(FriendlyByteBuf::readUtf);
+        List<String> removed = buf.readList(FriendlyByteBuf::readUtf);
+        return new S2CLockDataDeltaPacket(baseRevision, revision, added, removed);
     }
 
     public static void handle(S2CLockDataDeltaPacket packet, Supplier<NetworkEvent.Context> ctx) {
         ctx.get().enqueueWork(() -> {
             // Handle on client - use DistExecutor to safely reference client code
             DistExecutor.safeRunWhenOn(Dist.CLIENT, () -> () -> {
-                com.enviouse.emi_gamestages_link.client.ClientPacketHandler.handleDeltaLockData(packet.snapshot);
+                com.enviouse.emi_gamestages_link.client.ClientPacketHandler.handleDeltaLockData(packet);
             });
         });
         ctx.get().setPacketHandled(true);
     }
 
-    public LockSnapshot getSnapshot() {
-        return snapshot;
+    public int getBaseRevision() {
+        return baseRevision;
+    }
+
+    public int getRevision() {
+        return revision;
+    }
+
+    public List<String> getAddedStages() {
+        return addedStages;
+    }
+
+    public List<String> getRemovedStages() {
+        return removedStages;
     }
 }
@@ -15,24 +15,32 @@ import java.util.function.Supplier;
 public class S2CLockDataFullPacket {
 
     private final LockSnapshot snapshot;
+    private final int revision;
+    private final long contentHash;
 
-    public S2CLockDataFullPacket(LockSnapshot snapshot) {
+    public S2CLockDataFullPacket(LockSnapshot snapshot, int revision, long contentHash) {
         this.snapshot = snapshot;
+        this.revision = revision;
+        this.contentHash = contentHash;
     }
 
     public static void encode(S2CLockDataFullPacket packet, FriendlyByteBuf buf) {
+        buf.writeVarInt(packet.revision);
+        buf.writeLong(packet.contentHash);
         packet.snapshot.toNetwork(buf);
     }
 
     public static S2CLockDataFullPacket decode(FriendlyByteBuf buf) {
-        return new S2CLockDataFullPacket(LockSnapshot.fromNetwork(buf));
+        int revision = buf.readVarInt();
+        long contentHash = buf.readLong();
+        return new S2CLockDataFullPacket(LockSnapshot.fromNetwork(buf), revision, contentHash);
     }
 
     public static void handle(S2CLockDataFullPacket packet, Supplier<NetworkEvent.Context> ctx) {
         ctx.get().enqueueWork(() -> {
             // Handle on client - use DistExecutor to safely reference client code
             DistExecutor.safeRunWhenOn(Dist.CLIENT, () -> () -> {
-                com.enviouse.emi_gamestages_link.client.ClientPacketHandler.handleFullLockData(packet.snapshot);
+                com.enviouse.emi_gamestages_link.client.ClientPacketHandler.handleFullLockData(packet.snapshot, packet.revision, packet.contentHash);
             });
         });
         ctx.get().setPacketHandled(true);
@@ -41,4 +49,12 @@ public class S2CLockDataFullPacket {
     public LockSnapshot getSnapshot() {
         return snapshot;
     }
+
+    public int getRevision() {
+        return revision;
+    }
+
+    public long getContentHash() {
+        return contentHash;
+    }
 }
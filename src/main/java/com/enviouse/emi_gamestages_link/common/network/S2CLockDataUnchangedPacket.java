@@ -0,0 +1,62 @@
+package com.enviouse.emi_gamestages_link.common.network;
+
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.fml.DistExecutor;
+import net.minecraftforge.network.NetworkEvent;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Server to Client packet: The client's cached lock table is current.
+ * Sent instead of a full snapshot when the hash in the client's request matches,
+ * carrying only the player's stages and the new sync revision.
+ */
+public class S2CLockDataUnchangedPacket {
+
+    private final long contentHash;
+    private final int revision;
+    private final List<String> stages;
+
+    public S2CLockDataUnchangedPacket(long contentHash, int revision, List<String> stages) {
+        this.contentHash = contentHash;
+        this.revision = revision;
+        this.stages = stages;
+    }
+
+    public static void encode(S2CLockDataUnchangedPacket packet, FriendlyByteBuf buf) {
+        buf.writeLong(packet.contentHash);
+        buf.writeVarInt(packet.revision);
+        buf.writeCollection(packet.stages, FriendlyByteBuf::writeUtf);
+    }
+
+    public static S2CLockDataUnchangedPacket decode(FriendlyByteBuf buf) {
+        long contentHash = buf.readLong();
+        int revision = buf.readVarInt();
+        List<String> stages = buf.readList(FriendlyByteBuf::readUtf);
+        return new S2CLockDataUnchangedPacket(contentHash, revision, stages);
+    }
+
+    public static void handle(S2CLockDataUnchangedPacket packet, Supplier<NetworkEvent.Context> ctx) {
+        ctx.get().enqueueWork(() -> {
+            // Handle on client - use DistExecutor to safely reference client code
+            DistExecutor.safeRunWhenOn(Dist.CLIENT, () -> () -> {
+                com.enviouse.emi_gamestages_link.client.ClientPacketHandler.handleLockDataUnchanged(packet);
+            });
+        });
+        ctx.get().setPacketHandled(true);
+    }
+
+    public long getContentHash() {
+        return contentHash;
+    }
+
+    public int getRevision() {
+        return revision;
+    }
+
+    public List<String> getStages() {
+        return stages;
+    }
+}
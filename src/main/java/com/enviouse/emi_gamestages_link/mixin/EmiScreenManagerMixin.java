@@ -4,14 +4,13 @@ import com.enviouse.emi_gamestages_link.client.LockRenderHelper;
 import com.enviouse.emi_gamestages_link.common.ModConfiguration;
 import com.enviouse.emi_gamestages_link.client.ClientStageLockResolver;
 import dev.emi.emi.api.stack.EmiIngredient;
-import dev.emi.emi.api.stack.EmiStack;
 import dev.emi.emi.runtime.EmiDrawContext;
 import dev.emi.emi.screen.EmiScreenManager;
 import net.minecraft.client.gui.GuiGraphics;
-import net.minecraft.world.item.ItemStack;
 import org.spongepowered.asm.mixin.Final;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.Unique;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
@@ -46,6 +45,19 @@ public abstract class EmiScreenManagerMixin {
     @Shadow
     public abstract int getY(int x, int y);
 
+    // Locked slots of the current page, one bit per slot offset from the start index.
+    // Keyed on stack list identity and size, start index and lock-state version.
+    @Unique
+    private List<?> emi_gamestages_link$maskStacks;
+    @Unique
+    private int emi_gamestages_link$maskSize = -1;
+    @Unique
+    private int emi_gamestages_link$maskStart = -1;
+    @Unique
+    private int emi_gamestages_link$maskVersion = -1;
+    @Unique
+    private long[] emi_gamestages_link$mask = new long[0];
+
     /**
      * Inject after the batcher.draw() call to render locks on top of all items.
      */
@@ -62,38 +74,61 @@ public abstract class EmiScreenManagerMixin {
         try {
             GuiGraphics graphics = context.raw();
             List<? extends EmiIngredient> stacks = getStacks();
+            long[] mask = emi_gamestages_link$getLockMask(stacks, startIndex);
 
-            int i = startIndex;
-            for (int yo = 0; yo < th; yo++) {
-                for (int xo = 0; xo < widths[yo]; xo++) {
-                    if (i >= stacks.size()) {
-                        return;
-                    }
-                    int cx = getX(xo, yo);
-                    int cy = getY(xo, yo);
-                    EmiIngredient stack = stacks.get(i++);
-
-                    // Check if this item is locked
-                    for (EmiStack emiStack : stack.getEmiStacks()) {
-                        ItemStack itemStack = emiStack.getItemStack();
-                        if (itemStack.isEmpty()) {
-                            continue;
+            // Queue every icon of the page and draw them in one pass
+            LockRenderHelper.beginBatch();
+            try {
+                int slot = 0;
+                rows:
+                for (int yo = 0; yo < th; yo++) {
+                    for (int xo = 0; xo < widths[yo]; xo++) {
+                        if (startIndex + slot >= stacks.size()) {
+                            break rows;
                         }
-
-                        ClientStageLockResolver.LockInfo lockInfo = ClientStageLockResolver.getLockInfo(itemStack);
-                        if (lockInfo != null && lockInfo.isLocked()) {
+                        if ((mask[slot >>> 6] & (1L << slot)) != 0) {
                             // Draw lock at top-left of slot (slot position is cx+1, cy+1)
                             int padding = ModConfiguration.iconPadding;
-                            int iconX = cx + 1 + padding;
-                            int iconY = cy + 1 + padding;
+                            int iconX = getX(xo, yo) + 1 + padding;
+                            int iconY = getY(xo, yo) + 1 + padding;
                             LockRenderHelper.drawLockIconAt(graphics, iconX, iconY);
-                            break;
                         }
+                        slot++;
                     }
                 }
+            } finally {
+                LockRenderHelper.endBatch(graphics);
             }
         } catch (Exception e) {
             // Silently fail if something goes wrong
         }
     }
+
+    /**
+     * Get the locked slot mask of the visible page, resolving it again only when
+     * the page contents or the lock state changed since the last frame.
+     */
+    @Unique
+    private long[] emi_gamestages_link$getLockMask(List<? extends EmiIngredient> stacks, int startIndex) {
+        int version = ClientStageLockResolver.getLockStateVersion();
+        if (stacks == emi_gamestages_link$maskStacks && stacks.size() == emi_gamestages_link$maskSize
+                && startIndex == emi_gamestages_link$maskStart && version == emi_gamestages_link$maskVersion) {
+            return emi_gamestages_link$mask;
+        }
+
+        int slots = Math.max(0, Math.min(pageSize, stacks.size() - startIndex));
+        long[] mask = new long[(pageSize + 63) >>> 6];
+        for (int slot = 0; slot < slots; slot++) {
+            if (ClientStageLockResolver.getLockedStageId(stacks.get(startIndex + slot)) != ClientStageLockResolver.UNLOCKED) {
+                mask[slot >>> 6] |= 1L << slot;
+            }
+        }
+
+        emi_gamestages_link$maskStacks = stacks;
+        emi_gamestages_link$maskSize = stacks.size();
+        emi_gamestages_link$maskStart = startIndex;
+        emi_gamestages_link$maskVersion = version;
+        emi_gamestages_link$mask = mask;
+        return mask;
+    }
 }
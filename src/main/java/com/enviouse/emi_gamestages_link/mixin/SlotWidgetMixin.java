@@ -4,11 +4,9 @@ import com.enviouse.emi_gamestages_link.client.LockRenderHelper;
 import com.enviouse.emi_gamestages_link.common.ModConfiguration;
 import com.enviouse.emi_gamestages_link.client.ClientStageLockResolver;
 import dev.emi.emi.api.stack.EmiIngredient;
-import dev.emi.emi.api.stack.EmiStack;
 import dev.emi.emi.api.widget.Bounds;
 import dev.emi.emi.api.widget.SlotWidget;
 import net.minecraft.client.gui.GuiGraphics;
-import net.minecraft.world.item.ItemStack;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Shadow;
 import org.spongepowered.asm.mixin.Unique;
@@ -32,6 +30,13 @@ public abstract class SlotWidgetMixin {
     @Shadow
     public abstract Bounds getBounds();
 
+    // Memoized lock result, valid while the lock-state version and ingredient are unchanged
+    @Unique
+    private int emi_gamestages_link$lockVersion = Integer.MIN_VALUE;
+    @Unique
+    private EmiIngredient emi_gamestages_link$lockIngredient;
+    @Unique
+    private boolean emi_gamestages_link$locked;
 
     /**
      * Draw lock overlay in drawOverlay (after the item has rendered).
@@ -48,36 +53,46 @@ public abstract class SlotWidgetMixin {
             return;
         }
 
-        // Get the first EmiStack to check for lock
-        for (EmiStack stack : ingredient.getEmiStacks()) {
-            ItemStack itemStack = stack.getItemStack();
-            if (itemStack.isEmpty()) {
-                continue;
-            }
+        if (!emi_gamestages_link$isLocked(ingredient)) {
+            return;
+        }
+
+        Bounds bounds = getBounds();
 
-            ClientStageLockResolver.LockInfo lockInfo = ClientStageLockResolver.getLockInfo(itemStack);
-            if (lockInfo != null && lockInfo.isLocked()) {
-                Bounds bounds = getBounds();
+        // Drawn immediately, not batched: EMI exposes no hook after its recipe widgets draw
+        // and before its tooltips (the end of RecipeScreen.render comes after the tooltip),
+        // so there is no per-screen boundary to batch at, and a per-slot batch saves nothing.
 
-                // Draw light orange highlight on the slot
-                if (ModConfiguration.highlightLockedOutput) {
-                    LockRenderHelper.drawLockedHighlight(draw,
-                            bounds.x() + 1, bounds.y() + 1,
-                            bounds.width() - 2, bounds.height() - 2);
-                }
+        // Draw light orange highlight on the slot
+        if (ModConfiguration.highlightLockedOutput) {
+            LockRenderHelper.drawLockedHighlight(draw,
+                    bounds.x() + 1, bounds.y() + 1,
+                    bounds.width() - 2, bounds.height() - 2);
+        }
 
-                // Draw lock icon at top-left
-                if (ModConfiguration.showLockIcon) {
-                    int padding = ModConfiguration.iconPadding;
-                    int iconX = bounds.x() + padding + 1;
-                    int iconY = bounds.y() + padding + 1;
-                    LockRenderHelper.drawLockIconAt(draw, iconX, iconY);
-                }
+        // Draw lock icon at top-left
+        if (ModConfiguration.showLockIcon) {
+            int padding = ModConfiguration.iconPadding;
+            int iconX = bounds.x() + padding + 1;
+            int iconY = bounds.y() + padding + 1;
+            LockRenderHelper.drawLockIconAt(draw, iconX, iconY);
+        }
+    }
 
-                // Only process first stack
-                break;
-            }
+    /**
+     * Recipe widgets live as long as the screen, so the lock result is resolved
+     * once and again only after the global lock-state version changes.
+     */
+    @Unique
+    private boolean emi_gamestages_link$isLocked(EmiIngredient ingredient) {
+        int version = ClientStageLockResolver.getLockStateVersion();
+        if (version != emi_gamestages_link$lockVersion || ingredient != emi_gamestages_link$lockIngredient) {
+            // Locked if any of its item stacks is locked
+            emi_gamestages_link$locked = ClientStageLockResolver.getLockedStageId(ingredient) != ClientStageLockResolver.UNLOCKED;
+            emi_gamestages_link$lockIngredient = ingredient;
+            emi_gamestages_link$lockVersion = version;
         }
+        return emi_gamestages_link$locked;
     }
 }
 
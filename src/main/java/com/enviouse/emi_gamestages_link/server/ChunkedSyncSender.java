@@ -0,0 +1,137 @@
+package com.enviouse.emi_gamestages_link.server;
+
+import com.enviouse.emi_gamestages_link.common.EmiGameStagesLink;
+import com.enviouse.emi_gamestages_link.common.LockIndex;
+import com.enviouse.emi_gamestages_link.common.ModConfiguration;
+import com.enviouse.emi_gamestages_link.common.network.NetworkHandler;
+import com.enviouse.emi_gamestages_link.common.network.S2CLockDataChunkPacket;
+import net.minecraft.server.level.ServerPlayer;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Streams deflate-compressed full lock tables to players in sequenced chunks,
+ * at most {@link ModConfiguration#syncChunksPerTick} chunks per player per tick.
+ * The compressed table is shared by every transfer of the same index.
+ * Only accessed from the server thread.
+ */
+public class ChunkedSyncSender {
+
+    private static final Map<UUID, Transfer> PENDING = new LinkedHashMap<>();
+    private static int nextTransferId = 0;
+
+    /**
+     * Start (or restart) a full lock table transfer to a player.
+     * The player's stages are attached to the final chunk when it is sent.
+     */
+    public static void start(ServerPlayer player, LockIndex index) {
+        byte[] compressed = index.getCompressedTable();
+        int uncompressedLength = index.getEncodedTable().length;
+        int chunkSize = ModConfiguration.syncChunkSize;
+        int chunkCount = Math.max(1, (compressed.length + chunkSize - 1) / chunkSize);
+
+        nextTransferId = (nextTransferId + 1) & Integer.MAX_VALUE;
+        Transfer transfer = new Transfer(player, nextTransferId, compressed, uncompressedLength, chunkSize, chunkCount,
+                index.getContentHash());
+        PENDING.put(player.getUUID(), transfer);
+
+        EmiGameStagesLink.LOGGER.debug("Starting lock table transfer {} to {}: {} bytes compressed from {} in {} chunks",
+                transfer.transferId, player.getName().getString(), compressed.length, uncompressedLength, chunkCount);
+
+        // Send the first batch right away so small tables arrive without waiting a tick
+        if (sendBatch(transfer)) {
+            PENDING.remove(player.getUUID());
+        }
+    }
+
+    /**
+     * @return true if a transfer to this player is still in progress
+     */
+    public static boolean isPending(ServerPlayer player) {
+        return PENDING.containsKey(player.getUUID());
+    }
+
+    /**
+     * Send the next batch of chunks for every pending transfer.
+     * Called at the end of each server tick.
+     */
+    public static void tick() {
+        if (PENDING.isEmpty()) {
+            return;
+        }
+        Iterator<Transfer> it = PENDING.values().iterator();
+        while (it.hasNext()) {
+            Transfer transfer = it.next();
+            if (transfer.player.hasDisconnected() || sendBatch(transfer)) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Forget a player's pending transfer (on logout)
+     */
+    public static void remove(UUID playerId) {
+        PENDING.remove(playerId);
+    }
+
+    /**
+     * Drop all pending transfers (on server stop)
+     */
+    public static void clear() {
+        PENDING.clear();
+    }
+
+    /**
+     * @return true if the transfer is complete
+     */
+    private static boolean sendBatch(Transfer transfer) {
+        int budget = ModConfiguration.syncChunksPerTick;
+        while (budget-- > 0 && transfer.nextChunk < transfer.chunkCount) {
+            int index = transfer.nextChunk++;
+            int offset = index * transfer.chunkSize;
+            int length = Math.min(transfer.chunkSize, transfer.compressed.length - offset);
+
+            int revision = 0;
+            List<String> stages = List.of();
+            if (index == transfer.chunkCount - 1) {
+                // Stages are read when the table is complete so deltas during the transfer are not lost
+                stages = LockDataManager.getPlayerStages(transfer.player);
+                revision = PlayerSyncTracker.recordFullSync(transfer.player, stages);
+            }
+
+            NetworkHandler.sendLockDataChunk(transfer.player, new S2CLockDataChunkPacket(
+                    transfer.transferId, index, transfer.chunkCount,
+                    transfer.compressed.length, transfer.uncompressedLength,
+                    transfer.compressed, offset, length,
+                    revision, transfer.contentHash, stages));
+        }
+        return transfer.nextChunk >= transfer.chunkCount;
+    }
+
+    private static class Transfer {
+        final ServerPlayer player;
+        final int transferId;
+        final byte[] compressed;
+        final int uncompressedLength;
+        final int chunkSize;
+        final int chunkCount;
+        final long contentHash;
+        int nextChunk;
+
+        Transfer(ServerPlayer player, int transferId, byte[] compressed, int uncompressedLength, int chunkSize, int chunkCount,
+                 long contentHash) {
+            this.player = player;
+            this.transferId = transferId;
+            this.compressed = compressed;
+            this.uncompressedLength = uncompressedLength;
+            this.chunkSize = chunkSize;
+            this.chunkCount = chunkCount;
+            this.contentHash = contentHash;
+        }
+    }
+}
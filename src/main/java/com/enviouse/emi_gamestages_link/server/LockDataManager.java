@@ -3,170 +3,260 @@ package com.enviouse.emi_gamestages_link.server;
 import com.enviouse.emi_gamestages_link.common.EmiGameStagesLink;
 import com.enviouse.emi_gamestages_link.common.ModConfiguration;
 import com.enviouse.emi_gamestages_link.common.LockEntry;
+import com.enviouse.emi_gamestages_link.common.LockIndex;
 import com.enviouse.emi_gamestages_link.common.LockSnapshot;
 import com.enviouse.emi_gamestages_link.common.LockType;
 import com.enviouse.emi_gamestages_link.common.network.NetworkHandler;
 import com.enviouse.emi_gamestages_link.common.integration.IntegrationManager;
+import com.enviouse.emi_gamestages_link.common.integration.ItemStagesIntegration;
+import com.enviouse.emi_gamestages_link.common.integration.StageIntegrationBridge;
 import net.darkhax.gamestages.GameStageHelper;
 import net.darkhax.gamestages.data.IStageData;
+import net.minecraft.core.Holder;
+import net.minecraft.core.registries.BuiltInRegistries;
 import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.tags.TagKey;
 import net.minecraft.world.item.Item;
 import net.minecraft.world.item.ItemStack;
-import net.minecraftforge.fml.ModList;
+import net.minecraft.world.item.crafting.Recipe;
 import net.minecraftforge.registries.ForgeRegistries;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 /**
  * Server-side manager for computing and sending lock data to clients.
+ * The player-independent lock table is kept in a shared {@link LockIndex}
+ * that is rebuilt once per datapack/config reload; building a player's
+ * snapshot only attaches their unlocked stages.
  * This class is safe to load on dedicated servers.
  */
 public class LockDataManager {
 
+    private static volatile LockIndex lockIndex;
+
+    // Players whose stages changed this tick, flushed once at the end of the tick
+    private static final Set<ServerPlayer> dirtyPlayers = new LinkedHashSet<>();
+
     /**
-     * Build a complete lock snapshot for a player.
-     * This includes all locked items and recipes from all sources.
+     * Rebuild the shared lock index synchronously on the calling (server) thread.
      */
-    public static LockSnapshot buildSnapshot(ServerPlayer player) {
-        LockSnapshot snapshot = new LockSnapshot();
+    public static LockIndex rebuildLockIndex(MinecraftServer server) {
+        LockIndex index = buildLockIndex(captureSources(server));
+        installLockIndex(index);
+        return index;
+    }
 
-        // Get player's unlocked stages
-        IStageData stageData = GameStageHelper.getPlayerData(player);
-        if (stageData != null) {
-            Collection<String> stages = stageData.getStages();
-            snapshot.setUnlockedStages(stages);
-        }
+    /**
+     * Capture an immutable view of every lock source.
+     * Must be called on the server thread; the result may be used from any thread.
+     */
+    public static LockSources captureSources(MinecraftServer server) {
+        boolean itemStages = IntegrationManager.isItemStagesLoaded();
+        boolean recipeStages = IntegrationManager.isRecipeStagesLoaded();
+        List<?> restrictions = itemStages ? List.copyOf(StageIntegrationBridge.getAllRestrictions()) : List.of();
+        return new LockSources(
+                restrictions,
+                // Stacks are created here: construction fires capability events for other mods' handlers
+                restrictions.isEmpty() ? List.of() : ItemStagesIntegration.createItemStacks(),
+                recipeStages ? List.copyOf(server.getRecipeManager().getRecipes()) : List.of(),
+                new LinkedHashMap<>(ModConfiguration.itemLocks),
+                new LinkedHashMap<>(ModConfiguration.tagLocks)
+        );
+    }
 
-        // Add ItemStages locks if available
-        if (IntegrationManager.isItemStagesLoaded()) {
-            addItemStagesLocks(snapshot, player);
+    /**
+     * Build a lock index from captured sources. Safe to call off the server thread.
+     */
+    public static LockIndex buildLockIndex(LockSources sources) {
+        LockIndex.Builder builder = LockIndex.builder();
+
+        // Add ItemStages locks if available (restrictions evaluated against the item registry)
+        if (!sources.itemRestrictions().isEmpty()) {
+            ItemStagesIntegration.addItemLocks(builder, sources.itemRestrictions(), sources.itemStacks());
         }
 
         // Add RecipeStages locks if available
-        if (IntegrationManager.isRecipeStagesLoaded()) {
-            addRecipeStagesLocks(snapshot, player);
-        }
+        addRecipeStagesLocks(builder, sources.recipes());
 
         // Add config-based locks
-        addConfigLocks(snapshot);
+        addConfigLocks(builder, sources.itemLocks(), sources.tagLocks());
+
+        LockIndex index = builder.build();
 
-        EmiGameStagesLink.LOGGER.debug("Built lock snapshot for {}: {} item locks, {} recipe locks, {} unlocked stages",
-                player.getName().getString(),
-                snapshot.getItemLocks().size(),
-                snapshot.getRecipeLocks().size(),
-                snapshot.getUnlockedStages().size());
+        EmiGameStagesLink.LOGGER.debug("Built lock index: {} item locks, {} recipe locks",
+                index.getItemLocks().size(),
+                index.getRecipeLocks().size());
 
-        return snapshot;
+        return index;
+    }
+
+    /**
+     * Make a freshly built index the shared one
+     */
+    static void installLockIndex(LockIndex index) {
+        lockIndex = index;
     }
 
     /**
-     * Send full lock data to a player
+     * Drop the shared lock index so it is rebuilt on next use
+     * (config reload, tag reload, server shutdown). Any build in flight is discarded.
+     */
+    public static void invalidateLockIndex() {
+        lockIndex = null;
+        SnapshotPipeline.invalidate();
+    }
+
+    /**
+     * Send full lock data to a player.
+     * If the lock index is not built yet, the player is queued on the
+     * asynchronous {@link SnapshotPipeline} and served when it completes.
      */
     public static void sendFullLockDataToPlayer(ServerPlayer player) {
-        LockSnapshot snapshot = buildSnapshot(player);
-        NetworkHandler.sendFullLockData(player, snapshot);
+        LockIndex index = lockIndex;
+        if (index == null || SnapshotPipeline.isBuilding()) {
+            SnapshotPipeline.requestSnapshot(player.server, player);
+            return;
+        }
+        sendFullLockData(player, index);
     }
 
     /**
-     * Send delta lock data to a player (after stage change)
+     * Answer a client's lock data request. If the client already holds the current
+     * table (its hash matches), only the stage set is sent; otherwise a full sync.
+     *
+     * @param knownHash Content hash of the client's cached table, or 0 if it has none
      */
-    public static void sendDeltaLockDataToPlayer(ServerPlayer player) {
-        LockSnapshot snapshot = buildSnapshot(player);
-        NetworkHandler.sendDeltaLockData(player, snapshot);
+    public static void handleLockDataRequest(ServerPlayer player, long knownHash) {
+        LockIndex index = lockIndex;
+        if (knownHash != 0 && index != null && !SnapshotPipeline.isBuilding() && index.getContentHash() == knownHash) {
+            // Any transfer in flight would only resend what the client already has
+            ChunkedSyncSender.remove(player.getUUID());
+
+            List<String> stages = getPlayerStages(player);
+            int revision = PlayerSyncTracker.recordFullSync(player, stages);
+            NetworkHandler.sendLockDataUnchanged(player, knownHash, revision, stages);
+            EmiGameStagesLink.LOGGER.debug("Lock table of {} is current, sent stages only", player.getName().getString());
+            return;
+        }
+        sendFullLockDataToPlayer(player);
     }
 
-    private static void addItemStagesLocks(LockSnapshot snapshot, ServerPlayer player) {
-        try {
-            // Use reflection to access ItemStages RestrictionManager
-            if (!ModList.get().isLoaded("itemstages")) {
+    /**
+     * Rebuild the lock index off the server thread after a datapack reload
+     * and send the new table to every player once it is ready.
+     */
+    public static void reloadAndBroadcast(MinecraftServer server, Collection<ServerPlayer> players) {
+        SnapshotPipeline.requestRebuild(server, players);
+    }
+
+    /**
+     * Send a full snapshot of the given index with the player's current stages
+     */
+    static void sendFullLockData(ServerPlayer player, LockIndex index) {
+        if (ModConfiguration.chunkedSync) {
+            // Compressed and split over several ticks; stages are attached to the last chunk
+            ChunkedSyncSender.start(player, index);
+            return;
+        }
+
+        LockSnapshot snapshot = new LockSnapshot(index, getPlayerStages(player));
+        int revision = PlayerSyncTracker.recordFullSync(player, snapshot.getUnlockedStages());
+        NetworkHandler.sendFullLockData(player, snapshot, revision);
+    }
+
+    /**
+     * Send delta lock data to a player (after stage change).
+     * Only the stages added/removed since the last sent revision are sent;
+     * players that have not received a full snapshot yet get one instead.
+     */
+    public static void sendDeltaLockDataToPlayer(ServerPlayer player) {
+        if (ChunkedSyncSender.isPending(player)) {
+            // The full table in flight will carry the stages current when it completes
+            return;
+        }
+
+        PlayerSyncTracker.StageDelta delta = PlayerSyncTracker.computeDelta(player, getPlayerStages(player));
+        if (delta == null) {
+            if (LockRequestLimiter.isAwaitingInitialRequest(player)) {
+                // The first sync, driven by the client's request, will carry the current stages
                 return;
             }
+            sendFullLockDataToPlayer(player);
+            return;
+        }
+        if (delta.isEmpty()) {
+            return;
+        }
 
-            Class<?> restrictionManagerClass = Class.forName("net.darkhax.itemstages.RestrictionManager");
-            Object instance = restrictionManagerClass.getField("INSTANCE").get(null);
-
-            // Get all restrictions
-            var getAllRestrictionsMethod = restrictionManagerClass.getMethod("getAllRestrictions");
-            @SuppressWarnings("unchecked")
-            Collection<Object> restrictions = (Collection<Object>) getAllRestrictionsMethod.invoke(instance);
-
-            for (Object restriction : restrictions) {
-                try {
-                    // Get stages from restriction
-                    var getStagesMethod = restriction.getClass().getMethod("getStages");
-                    @SuppressWarnings("unchecked")
-                    Set<String> stages = (Set<String>) getStagesMethod.invoke(restriction);
-
-                    if (stages == null || stages.isEmpty()) {
-                        continue;
-                    }
-
-                    String requiredStage = stages.iterator().next();
-
-                    // Get item predicate and test against all items
-                    var getItemPredicateMethod = restriction.getClass().getMethod("getItemPredicate");
-                    Object predicate = getItemPredicateMethod.invoke(restriction);
-
-                    if (predicate != null) {
-                        // We can't easily iterate predicates, so we'll rely on config and client-side detection
-                        // For now, just log that we found restrictions
-                    }
-                } catch (Exception e) {
-                    EmiGameStagesLink.LOGGER.debug("Error processing ItemStages restriction: {}", e.getMessage());
-                }
+        NetworkHandler.sendDeltaLockData(player, delta.baseRevision(), delta.revision(), delta.added(), delta.removed());
+        EmiGameStagesLink.LOGGER.debug("Sent stage delta to {}: +{} -{} (revision {})",
+                player.getName().getString(), delta.added(), delta.removed(), delta.revision());
+    }
+
+    /**
+     * Mark a player's stages as changed. Any number of stage events in one tick
+     * collapse into a single delta sent by {@link #flushDirtyPlayers()}.
+     */
+    public static void markStagesDirty(ServerPlayer player) {
+        dirtyPlayers.add(player);
+    }
+
+    /**
+     * Send one consolidated stage delta per player whose stages changed this tick.
+     * Called at the end of each server tick.
+     */
+    public static void flushDirtyPlayers() {
+        if (dirtyPlayers.isEmpty()) {
+            return;
+        }
+        List<ServerPlayer> players = new ArrayList<>(dirtyPlayers);
+        dirtyPlayers.clear();
+        for (ServerPlayer player : players) {
+            if (!player.hasDisconnected()) {
+                sendDeltaLockDataToPlayer(player);
             }
-        } catch (Exception e) {
-            EmiGameStagesLink.LOGGER.debug("Error accessing ItemStages: {}", e.getMessage());
         }
     }
 
-    private static void addRecipeStagesLocks(LockSnapshot snapshot, ServerPlayer player) {
-        try {
-            if (!ModList.get().isLoaded("recipestages")) {
-                return;
-            }
+    /**
+     * Forget pending stage changes for a player (on logout)
+     */
+    public static void forgetPlayer(ServerPlayer player) {
+        dirtyPlayers.remove(player);
+    }
 
-            // Get recipe manager and iterate staged recipes
-            var level = player.level();
-            var recipeManager = level.getRecipeManager();
-
-            for (var recipe : recipeManager.getRecipes()) {
-                try {
-                    // Check if recipe implements IStagedRecipe
-                    for (Class<?> iface : recipe.getClass().getInterfaces()) {
-                        if (iface.getSimpleName().equals("IStagedRecipe")) {
-                            var getStageMethod = recipe.getClass().getMethod("getStage");
-                            Object result = getStageMethod.invoke(recipe);
-                            if (result instanceof String stage && !stage.isEmpty()) {
-                                ResourceLocation recipeId = recipe.getId();
-                                LockEntry entry = new LockEntry(
-                                        recipeId,
-                                        LockEntry.EntryType.RECIPE,
-                                        stage,
-                                        LockType.RECIPE_STAGES,
-                                        "RecipeStages"
-                                );
-                                snapshot.addRecipeLock(entry);
-                            }
-                            break;
-                        }
-                    }
-                } catch (Exception e) {
-                    // Ignore individual recipe errors
-                }
+    static List<String> getPlayerStages(ServerPlayer player) {
+        IStageData stageData = GameStageHelper.getPlayerData(player);
+        return stageData == null ? List.of() : List.copyOf(stageData.getStages());
+    }
+
+    private static void addRecipeStagesLocks(LockIndex.Builder builder, List<Recipe<?>> recipes) {
+        for (Recipe<?> recipe : recipes) {
+            String stage = StageIntegrationBridge.getRecipeStage(recipe);
+            if (stage != null && !stage.isEmpty()) {
+                LockEntry entry = new LockEntry(
+                        recipe.getId(),
+                        LockEntry.EntryType.RECIPE,
+                        stage,
+                        LockType.RECIPE_STAGES,
+                        "RecipeStages"
+                );
+                builder.addRecipeLock(entry);
             }
-        } catch (Exception e) {
-            EmiGameStagesLink.LOGGER.debug("Error accessing RecipeStages: {}", e.getMessage());
         }
     }
 
-    private static void addConfigLocks(LockSnapshot snapshot) {
+    private static void addConfigLocks(LockIndex.Builder builder, Map<String, String> itemLocks, Map<String, String> tagLocks) {
         // Add direct item locks from config
-        for (Map.Entry<String, String> entry : ModConfiguration.itemLocks.entrySet()) {
+        for (Map.Entry<String, String> entry : itemLocks.entrySet()) {
             ResourceLocation itemId = ResourceLocation.tryParse(entry.getKey());
             if (itemId != null) {
                 LockEntry lockEntry = new LockEntry(
@@ -176,12 +266,12 @@ public class LockDataManager {
                         LockType.CONFIG,
                         "Config"
                 );
-                snapshot.addItemLock(lockEntry);
+                builder.addItemLock(lockEntry);
             }
         }
 
         // Add tag-based locks from config
-        for (Map.Entry<String, String> entry : ModConfiguration.tagLocks.entrySet()) {
+        for (Map.Entry<String, String> entry : tagLocks.entrySet()) {
             String tagStr = entry.getKey();
             if (tagStr.startsWith("#")) {
                 tagStr = tagStr.substring(1);
@@ -193,24 +283,31 @@ public class LockDataManager {
             }
 
             TagKey<Item> tagKey = TagKey.create(ForgeRegistries.ITEMS.getRegistryKey(), tagId);
+            String reason = "Config (tag: " + entry.getKey() + ")";
 
-            // Find all items with this tag
-            for (Item item : ForgeRegistries.ITEMS) {
-                ItemStack stack = new ItemStack(item);
-                if (stack.is(tagKey)) {
-                    ResourceLocation itemId = ForgeRegistries.ITEMS.getKey(item);
-                    if (itemId != null) {
-                        LockEntry lockEntry = new LockEntry(
-                                itemId,
-                                LockEntry.EntryType.ITEM,
-                                entry.getValue(),
-                                LockType.CONFIG,
-                                "Config (tag: " + entry.getKey() + ")"
-                        );
-                        snapshot.addItemLock(lockEntry);
-                    }
+            // Walk the tag's members directly instead of testing every registered item
+            for (Holder<Item> holder : BuiltInRegistries.ITEM.getTagOrEmpty(tagKey)) {
+                ResourceLocation itemId = ForgeRegistries.ITEMS.getKey(holder.value());
+                if (itemId != null) {
+                    LockEntry lockEntry = new LockEntry(
+                            itemId,
+                            LockEntry.EntryType.ITEM,
+                            entry.getValue(),
+                            LockType.CONFIG,
+                            reason
+                    );
+                    builder.addItemLock(lockEntry);
                 }
             }
         }
     }
+
+    /**
+     * Immutable view of every lock source, captured on the server thread.
+     */
+    public record LockSources(List<?> itemRestrictions,
+                              List<ItemStack> itemStacks,
+                              List<Recipe<?>> recipes,
+                              Map<String, String> itemLocks,
+                              Map<String, String> tagLocks) {}
 }
@@ -0,0 +1,168 @@
+package com.enviouse.emi_gamestages_link.server;
+
+import com.enviouse.emi_gamestages_link.common.EmiGameStagesLink;
+import com.enviouse.emi_gamestages_link.common.ModConfiguration;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerPlayer;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Rate limits lock data requests from clients.
+ * <p>
+ * The first sync of a session is driven by the client's request, which carries the
+ * hash of its cached table. If no request arrives within
+ * {@link ModConfiguration#initialSyncTimeoutTicks} of joining, a full sync is sent anyway.
+ * <p>
+ * A player is served at most once per {@link ModConfiguration#requestCooldownTicks}.
+ * Requests arriving during the cooldown, or while the player is already waiting on
+ * an index build or receiving a chunked table, are held as a single pending request (newer ones replace it) and
+ * served when allowed. Every collapsed request is counted as dropped, and the count
+ * is logged once per {@link #LOG_INTERVAL_TICKS} while requests are being dropped.
+ * Only accessed from the server thread.
+ */
+public class LockRequestLimiter {
+
+    // One minute
+    private static final int LOG_INTERVAL_TICKS = 1200;
+
+    private static final Map<UUID, RequestState> STATES = new HashMap<>();
+    private static long droppedRequests = 0;
+    private static long droppedSinceLog = 0;
+    private static int lastLogTick = 0;
+
+    /**
+     * Handle a lock data request from a client
+     */
+    public static void onRequest(ServerPlayer player, long knownHash) {
+        MinecraftServer server = player.getServer();
+        if (server == null) {
+            return;
+        }
+
+        RequestState state = STATES.computeIfAbsent(player.getUUID(), id -> new RequestState());
+        state.awaitingSinceTick = -1;
+        if (state.pending) {
+            // Collapse into the request already queued; the latest hash wins
+            state.knownHash = knownHash;
+            droppedRequests++;
+            droppedSinceLog++;
+            return;
+        }
+
+        if (canServe(player, state, server.getTickCount())) {
+            serve(player, state, knownHash, server.getTickCount());
+        } else {
+            state.pending = true;
+            state.knownHash = knownHash;
+        }
+    }
+
+    /**
+     * Wait for a joining player's client to request its first sync
+     */
+    public static void expectInitialRequest(ServerPlayer player) {
+        MinecraftServer server = player.getServer();
+        if (server == null) {
+            return;
+        }
+        RequestState state = STATES.computeIfAbsent(player.getUUID(), id -> new RequestState());
+        state.awaitingSinceTick = server.getTickCount();
+    }
+
+    /**
+     * @return true if the player joined and their client has not requested lock data yet
+     */
+    public static boolean isAwaitingInitialRequest(ServerPlayer player) {
+        RequestState state = STATES.get(player.getUUID());
+        return state != null && state.awaitingSinceTick >= 0;
+    }
+
+    /**
+     * Serve pending requests whose cooldown has elapsed, and fall back to a full sync
+     * for joined players whose client never asked. Called at the end of each server tick.
+     */
+    public static void tick(MinecraftServer server) {
+        int now = server.getTickCount();
+        if (now - lastLogTick >= LOG_INTERVAL_TICKS) {
+            lastLogTick = now;
+            if (droppedSinceLog > 0) {
+                EmiGameStagesLink.LOGGER.info("Collapsed {} lock data requests in the last minute ({} since the server started)",
+                        droppedSinceLog, droppedRequests);
+                droppedSinceLog = 0;
+            }
+        }
+        if (STATES.isEmpty()) {
+            return;
+        }
+        Iterator<Map.Entry<UUID, RequestState>> it = STATES.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<UUID, RequestState> entry = it.next();
+            RequestState state = entry.getValue();
+            if (state.awaitingSinceTick >= 0 && now - state.awaitingSinceTick >= ModConfiguration.initialSyncTimeoutTicks) {
+                // No request from the client, treat it as one without a cached table
+                state.awaitingSinceTick = -1;
+                state.pending = true;
+                state.knownHash = 0;
+            }
+            if (!state.pending) {
+                continue;
+            }
+            // Looked up each time, the player entity is replaced on respawn
+            ServerPlayer player = server.getPlayerList().getPlayer(entry.getKey());
+            if (player == null) {
+                it.remove();
+            } else if (canServe(player, state, now)) {
+                state.pending = false;
+                serve(player, state, state.knownHash, now);
+            }
+        }
+    }
+
+    /**
+     * @return number of requests collapsed into a pending one since the server started
+     */
+    public static long getDroppedRequests() {
+        return droppedRequests;
+    }
+
+    /**
+     * Forget a player's request state (on logout)
+     */
+    public static void remove(UUID playerId) {
+        STATES.remove(playerId);
+    }
+
+    /**
+     * Drop all request state and reset the counter (on server stop)
+     */
+    public static void clear() {
+        STATES.clear();
+        droppedRequests = 0;
+        droppedSinceLog = 0;
+        lastLogTick = 0;
+    }
+
+    private static boolean canServe(ServerPlayer player, RequestState state, int now) {
+        if (SnapshotPipeline.isWaiting(player.getUUID()) || ChunkedSyncSender.isPending(player)) {
+            // At most one build or transfer in flight per player; serving now would restart it
+            return false;
+        }
+        return state.lastServedTick < 0 || now - state.lastServedTick >= ModConfiguration.requestCooldownTicks;
+    }
+
+    private static void serve(ServerPlayer player, RequestState state, long knownHash, int now) {
+        state.lastServedTick = now;
+        LockDataManager.handleLockDataRequest(player, knownHash);
+    }
+
+    private static class RequestState {
+        int lastServedTick = -1;
+        int awaitingSinceTick = -1;
+        boolean pending;
+        long knownHash;
+    }
+}
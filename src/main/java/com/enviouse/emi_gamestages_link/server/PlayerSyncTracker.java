@@ -0,0 +1,104 @@
+package com.enviouse.emi_gamestages_link.server;
+
+import net.minecraft.server.level.ServerPlayer;
+
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks, per player, which stage set was last sent to their client and under which revision.
+ * Stage changes are diffed against this state so only added/removed stages go over the wire.
+ * This class is safe to load on dedicated servers.
+ */
+public class PlayerSyncTracker {
+
+    private static final Map<UUID, SyncState> STATES = new ConcurrentHashMap<>();
+
+    /**
+     * Record that a full snapshot with the given stages is being sent.
+     *
+     * @return the revision the client should adopt
+     */
+    public static int recordFullSync(ServerPlayer player, Collection<String> stages) {
+        SyncState state = STATES.computeIfAbsent(player.getUUID(), id -> new SyncState());
+        synchronized (state) {
+            state.revision++;
+            state.sentStages = new HashSet<>(stages);
+            state.hasFullSync = true;
+            return state.revision;
+        }
+    }
+
+    /**
+     * Diff the player's current stages against the last sent state and advance the revision.
+     *
+     * @return the delta to send, or null if nothing changed or no full sync has been sent yet
+     */
+    @Nullable
+    public static StageDelta computeDelta(ServerPlayer player, Collection<String> stages) {
+        SyncState state = STATES.get(player.getUUID());
+        if (state == null) {
+            return null;
+        }
+        synchronized (state) {
+            if (!state.hasFullSync) {
+                return null;
+            }
+
+            Set<String> current = new HashSet<>(stages);
+            List<String> added = new ArrayList<>();
+            for (String stage : current) {
+                if (!state.sentStages.contains(stage)) {
+                    added.add(stage);
+                }
+            }
+            List<String> removed = new ArrayList<>();
+            for (String stage : state.sentStages) {
+                if (!current.contains(stage)) {
+                    removed.add(stage);
+                }
+            }
+
+            if (added.isEmpty() && removed.isEmpty()) {
+                return StageDelta.EMPTY;
+            }
+
+            int baseRevision = state.revision;
+            state.revision++;
+            state.sentStages = current;
+            return new StageDelta(baseRevision, state.revision, added, removed);
+        }
+    }
+
+    /**
+     * Forget a player's sync state (on logout)
+     */
+    public static void remove(UUID playerId) {
+        STATES.remove(playerId);
+    }
+
+    /**
+     * Forget all sync state (on server stop)
+     */
+    public static void clear() {
+        STATES.clear();
+    }
+
+    /**
+     * Stages added/removed between two revisions of a player's synced state.
+     */
+    public record StageDelta(int baseRevision, int revision, List<String> added, List<String> removed) {
+        public static final StageDelta EMPTY = new StageDelta(0, 0, List.of(), List.of());
+
+        public boolean isEmpty() {
+            return added.isEmpty() && removed.isEmpty();
+        }
+    }
+
+    private static class SyncState {
+        int revision;
+        boolean hasFullSync;
+        Set<String> sentStages = Set.of();
+    }
+}
@@ -4,9 +4,14 @@ import com.enviouse.emi_gamestages_link.common.EmiGameStagesLink;
 import net.darkhax.gamestages.event.GameStageEvent;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraftforge.common.MinecraftForge;
+import net.minecraftforge.event.TickEvent;
 import net.minecraftforge.event.OnDatapackSyncEvent;
+import net.minecraftforge.event.TagsUpdatedEvent;
 import net.minecraftforge.event.entity.player.PlayerEvent;
+import net.minecraftforge.event.server.ServerStoppedEvent;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.event.config.ModConfigEvent;
+import net.minecraftforge.fml.javafmlmod.FMLJavaModLoadingContext;
 
 /**
  * Server-side initialization and event handling.
@@ -20,77 +25,129 @@ public class ServerInit {
      */
     public static void init() {
         MinecraftForge.EVENT_BUS.register(new ServerEventHandler());
+
+        // Config lock definitions feed the shared lock index
+        FMLJavaModLoadingContext.get().getModEventBus().addListener(ServerInit::onConfigReloaded);
         EmiGameStagesLink.LOGGER.info("Server event handlers registered");
     }
 
+    /**
+     * Drop the shared lock index when the config file is edited at runtime
+     */
+    private static void onConfigReloaded(ModConfigEvent.Reloading event) {
+        if (event.getConfig().getModId().equals(EmiGameStagesLink.MODID)) {
+            LockDataManager.invalidateLockIndex();
+        }
+    }
+
     /**
      * Server-side event handler class
      */
     public static class ServerEventHandler {
 
         /**
-         * Send lock data when player logs in
+         * Forget the player's sync state when they leave
          */
         @SubscribeEvent
-        public void onPlayerLoggedIn(PlayerEvent.PlayerLoggedInEvent event) {
+        public void onPlayerLoggedOut(PlayerEvent.PlayerLoggedOutEvent event) {
+            PlayerSyncTracker.remove(event.getEntity().getUUID());
+            ChunkedSyncSender.remove(event.getEntity().getUUID());
+            SnapshotPipeline.remove(event.getEntity().getUUID());
+            LockRequestLimiter.remove(event.getEntity().getUUID());
             if (event.getEntity() instanceof ServerPlayer serverPlayer) {
-                // Delay slightly to ensure player is fully initialized
-                serverPlayer.getServer().execute(() -> {
-                    LockDataManager.sendFullLockDataToPlayer(serverPlayer);
-                    EmiGameStagesLink.LOGGER.debug("Sent initial lock data to {}", serverPlayer.getName().getString());
-                });
+                LockDataManager.forgetPlayer(serverPlayer);
             }
         }
 
         /**
-         * Send lock data when datapacks are reloaded
+         * Send lock data to everyone when datapacks are reloaded
          */
         @SubscribeEvent
         public void onDatapackSync(OnDatapackSyncEvent event) {
             if (event.getPlayer() != null) {
-                // Single player sync
-                LockDataManager.sendFullLockDataToPlayer(event.getPlayer());
+                // A player joining: their client requests lock data with its cached table hash,
+                // so nothing is pushed here unless that request never arrives
+                LockRequestLimiter.expectInitialRequest(event.getPlayer());
             } else if (event.getPlayerList() != null) {
-                // All players sync (e.g., /reload command)
-                for (ServerPlayer player : event.getPlayerList().getPlayers()) {
-                    LockDataManager.sendFullLockDataToPlayer(player);
-                }
-                EmiGameStagesLink.LOGGER.debug("Sent lock data to all players after datapack reload");
+                // All players sync (e.g., /reload command) - recipes and tags may have changed,
+                // so rebuild the index off-thread and send to everyone once it is ready
+                LockDataManager.reloadAndBroadcast(event.getPlayerList().getServer(), event.getPlayerList().getPlayers());
+                EmiGameStagesLink.LOGGER.debug("Queued lock data rebuild for all players after datapack reload");
+            }
+        }
+
+        /**
+         * Rebuild the lock index when server tags are reloaded so config tag locks
+         * reflect the new tag membership
+         */
+        @SubscribeEvent
+        public void onTagsUpdated(TagsUpdatedEvent event) {
+            if (event.getUpdateCause() == TagsUpdatedEvent.UpdateCause.SERVER_DATA_LOAD) {
+                LockDataManager.invalidateLockIndex();
+            }
+        }
+
+        /**
+         * Flush coalesced stage changes, serve deferred lock data requests
+         * and stream pending chunked lock table transfers
+         */
+        @SubscribeEvent
+        public void onServerTick(TickEvent.ServerTickEvent event) {
+            if (event.phase == TickEvent.Phase.END) {
+                LockDataManager.flushDirtyPlayers();
+                LockRequestLimiter.tick(event.getServer());
+                ChunkedSyncSender.tick();
+            }
+        }
+
+        /**
+         * Release the lock index when the server shuts down
+         */
+        @SubscribeEvent
+        public void onServerStopped(ServerStoppedEvent event) {
+            LockDataManager.invalidateLockIndex();
+            PlayerSyncTracker.clear();
+            ChunkedSyncSender.clear();
+            SnapshotPipeline.clear();
+            if (LockRequestLimiter.getDroppedRequests() > 0) {
+                EmiGameStagesLink.LOGGER.debug("Collapsed {} redundant lock data requests this session",
+                        LockRequestLimiter.getDroppedRequests());
             }
+            LockRequestLimiter.clear();
         }
 
         /**
-         * Send delta lock data when a stage is added
+         * Queue a stage delta when a stage is added
          */
         @SubscribeEvent
         public void onStageAdded(GameStageEvent.Added event) {
             if (event.getEntity() instanceof ServerPlayer serverPlayer) {
-                LockDataManager.sendDeltaLockDataToPlayer(serverPlayer);
-                EmiGameStagesLink.LOGGER.debug("Sent delta lock data to {} after stage added: {}",
+                LockDataManager.markStagesDirty(serverPlayer);
+                EmiGameStagesLink.LOGGER.debug("Queued lock data update for {} after stage added: {}",
                         serverPlayer.getName().getString(), event.getStageName());
             }
         }
 
         /**
-         * Send delta lock data when a stage is removed
+         * Queue a stage delta when a stage is removed
          */
         @SubscribeEvent
         public void onStageRemoved(GameStageEvent.Removed event) {
             if (event.getEntity() instanceof ServerPlayer serverPlayer) {
-                LockDataManager.sendDeltaLockDataToPlayer(serverPlayer);
-                EmiGameStagesLink.LOGGER.debug("Sent delta lock data to {} after stage removed: {}",
+                LockDataManager.markStagesDirty(serverPlayer);
+                EmiGameStagesLink.LOGGER.debug("Queued lock data update for {} after stage removed: {}",
                         serverPlayer.getName().getString(), event.getStageName());
             }
         }
 
         /**
-         * Send delta lock data when stages are cleared
+         * Queue a stage delta when stages are cleared
          */
         @SubscribeEvent
         public void onStagesCleared(GameStageEvent.Cleared event) {
             if (event.getEntity() instanceof ServerPlayer serverPlayer) {
-                LockDataManager.sendDeltaLockDataToPlayer(serverPlayer);
-                EmiGameStagesLink.LOGGER.debug("Sent delta lock data to {} after stages cleared",
+                LockDataManager.markStagesDirty(serverPlayer);
+                EmiGameStagesLink.LOGGER.debug("Queued lock data update for {} after stages cleared",
                         serverPlayer.getName().getString());
             }
         }
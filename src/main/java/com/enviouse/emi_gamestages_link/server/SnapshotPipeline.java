@@ -0,0 +1,188 @@
+package com.enviouse.emi_gamestages_link.server;
+
+import com.enviouse.emi_gamestages_link.common.EmiGameStagesLink;
+import com.enviouse.emi_gamestages_link.common.LockIndex;
+import com.enviouse.emi_gamestages_link.common.ModConfiguration;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerPlayer;
+
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds the lock index off the server thread.
+ * <p>
+ * The server thread captures an immutable view of the lock sources, a bounded
+ * worker builds and encodes the index, and the result is handed back to the
+ * server thread, which attaches each waiting player's current stages and sends it. Every build is stamped with a
+ * generation number; results from a superseded build are discarded.
+ */
+public class SnapshotPipeline {
+
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    private static final ThreadFactory THREAD_FACTORY = runnable -> {
+        Thread thread = new Thread(runnable, "EmiGameStagesLink-Snapshot-" + THREAD_COUNTER.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    };
+
+    // One worker is enough: builds are rare and a newer build supersedes any queued one
+    private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(
+            1, 1, 30, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(4),
+            THREAD_FACTORY,
+            new ThreadPoolExecutor.DiscardOldestPolicy());
+
+    static {
+        EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    private static final AtomicInteger generation = new AtomicInteger();
+
+    // Server thread only
+    private static final Map<UUID, ServerPlayer> waiting = new LinkedHashMap<>();
+    private static int inFlightGeneration = -1;
+
+    /**
+     * @return true if an index build is in flight
+     */
+    public static boolean isBuilding() {
+        return inFlightGeneration != -1;
+    }
+
+    /**
+     * @return true if the player is waiting on an index build in flight
+     */
+    public static boolean isWaiting(UUID playerId) {
+        return waiting.containsKey(playerId);
+    }
+
+    /**
+     * Queue a player for the next completed index. Starts a build if none is in flight.
+     * Must be called on the server thread.
+     */
+    public static void requestSnapshot(MinecraftServer server, ServerPlayer player) {
+        if (isBuilding()) {
+            waiting.put(player.getUUID(), player);
+            return;
+        }
+        requestRebuild(server, List.of(player));
+    }
+
+    /**
+     * Start a new index build, superseding any in flight, and send the result to the
+     * given players plus any already waiting. Must be called on the server thread.
+     */
+    public static void requestRebuild(MinecraftServer server, Collection<ServerPlayer> recipients) {
+        for (ServerPlayer player : recipients) {
+            waiting.put(player.getUUID(), player);
+        }
+
+        int gen = generation.incrementAndGet();
+        inFlightGeneration = gen;
+
+        // Immutable inputs, captured on the server thread
+        LockDataManager.LockSources sources = LockDataManager.captureSources(server);
+
+        EXECUTOR.execute(() -> build(server, gen, sources));
+    }
+
+    /**
+     * Mark any build in flight as stale (its sources changed). Safe from any thread.
+     */
+    public static void invalidate() {
+        generation.incrementAndGet();
+    }
+
+    private static void build(MinecraftServer server, int gen, LockDataManager.LockSources sources) {
+        if (gen != generation.get()) {
+            // Superseded before it started; let the server thread decide whether to rebuild
+            server.execute(() -> deliver(server, gen, null));
+            return;
+        }
+
+        long start = System.nanoTime();
+        LockIndex index;
+        try {
+            index = LockDataManager.buildLockIndex(sources);
+
+            // Encode (and compress) once here so the server thread only copies bytes
+            if (ModConfiguration.chunkedSync) {
+                index.getCompressedTable();
+            } else {
+                index.getEncodedTable();
+            }
+        } catch (Throwable t) {
+            EmiGameStagesLink.LOGGER.error("Failed to build lock index off-thread, building on the server thread", t);
+            server.execute(() -> fallback(server, gen));
+            return;
+        }
+
+        EmiGameStagesLink.LOGGER.debug("Lock index generation {} built in {} ms",
+                gen, (System.nanoTime() - start) / 1_000_000);
+
+        server.execute(() -> deliver(server, gen, index));
+    }
+
+    private static void deliver(MinecraftServer server, int gen, @Nullable LockIndex index) {
+        if (gen != inFlightGeneration) {
+            // A newer build was requested; it will serve the waiting players
+            return;
+        }
+        if (index == null || gen != generation.get()) {
+            // Sources changed while building; rebuild for everyone still waiting
+            EmiGameStagesLink.LOGGER.debug("Discarding stale lock index generation {}", gen);
+            requestRebuild(server, List.of());
+            return;
+        }
+
+        inFlightGeneration = -1;
+        LockDataManager.installLockIndex(index);
+
+        List<ServerPlayer> players = new ArrayList<>(waiting.values());
+        waiting.clear();
+        for (ServerPlayer player : players) {
+            if (!player.hasDisconnected()) {
+                LockDataManager.sendFullLockData(player, index);
+            }
+        }
+    }
+
+    private static void fallback(MinecraftServer server, int gen) {
+        if (gen != inFlightGeneration) {
+            return;
+        }
+        inFlightGeneration = -1;
+        LockIndex index = LockDataManager.rebuildLockIndex(server);
+
+        List<ServerPlayer> players = new ArrayList<>(waiting.values());
+        waiting.clear();
+        for (ServerPlayer player : players) {
+            if (!player.hasDisconnected()) {
+                LockDataManager.sendFullLockData(player, index);
+            }
+        }
+    }
+
+    /**
+     * Forget a waiting player (on logout)
+     */
+    public static void remove(UUID playerId) {
+        waiting.remove(playerId);
+    }
+
+    /**
+     * Drop all waiting players and discard any build in flight (on server stop)
+     */
+    public static void clear() {
+        waiting.clear();
+        inFlightGeneration = -1;
+        generation.incrementAndGet();
+    }
+}
@@ -0,0 +1,65 @@
+package com.enviouse.emi_gamestages_link.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LockStateTableTest {
+
+    private static LockStateTable table() {
+        int[] states = new int[8];
+        Arrays.fill(states, LockStateTable.UNLOCKED);
+        states[2] = 0;
+        states[5] = 1;
+        return new LockStateTable(states, new String[]{"iron_age", "steel_age"});
+    }
+
+    @Test
+    void looksUpLockedStageByRegistryId() {
+        LockStateTable table = table();
+        assertEquals(0, table.getLockedStageId(2));
+        assertEquals(1, table.getLockedStageId(5));
+        assertEquals(LockStateTable.UNLOCKED, table.getLockedStageId(3));
+        assertEquals("iron_age", table.getStageName(0));
+        assertEquals("steel_age", table.getStageName(table.getLockedStageId(5)));
+    }
+
+    @Test
+    void outOfRangeIdsAreUnlocked() {
+        LockStateTable table = table();
+        // Registry ids are -1 for unregistered items and can outgrow a table built earlier
+        assertEquals(LockStateTable.UNLOCKED, table.getLockedStageId(-1));
+        assertEquals(LockStateTable.UNLOCKED, table.getLockedStageId(8));
+        assertEquals("", table.getStageName(LockStateTable.UNLOCKED));
+        assertEquals("", table.getStageName(2));
+    }
+
+    @Test
+    void lookupDoesNotAllocate() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads)
+                || !threads.isThreadAllocatedMemorySupported()) {
+            return;
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+        LockStateTable table = table();
+        long threadId = Thread.currentThread().getId();
+
+        int sum = 0;
+        for (int i = 0; i < 100_000; i++) {
+            sum += table.getLockedStageId(i & 15);
+        }
+
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 1_000_000; i++) {
+            sum += table.getLockedStageId(i & 15);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        // Allow for the probe itself, far below one byte per lookup
+        assertTrue(allocated < 1024, "lookups allocated " + allocated + " bytes (" + sum + ")");
+    }
+}